@@ -0,0 +1,170 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * This class indexes the macro-classifiers of a population set, so that neither building a match set
+ * nor looking for a duplicate classifier has to scan the whole population. @see XClassifierSet
+ *
+ * Since a situation only has a few bits (7 in this model), the index keeps one bucket for every fully specified state.
+ * A classifier is put into the bucket of every state its condition matches, i.e., 2^k buckets for a condition with k don't care symbols.
+ * The classifiers matching a state are then read from a single bucket; the classifiers matching a state with don't care symbols
+ * are read from the buckets of all its completions.
+ * Besides, a hash map from each (condition, action) combination to its macro-classifier detects duplicates in constant time.
+ *
+ * Buckets keep the classifiers in the order they were added to the population (removal does not change the order of the rest),
+ * so that a match set contains its classifiers in the same order as if it were built by scanning the population.
+ *
+ * The index only works for conditions of the same length not longer than {@link #MAX_STATE_BITS} bits and actions in [0, 255].
+ * If any other classifier is added, the index becomes unusable and the population set falls back to scanning.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class ClassifierIndex {
+
+	/**
+	 * The longest condition to be indexed. The number of buckets is 2^length.
+	 */
+	public static final int MAX_STATE_BITS = 16;
+
+	/**
+	 * The condition length of all indexed classifiers (-1 before the first classifier is added)
+	 */
+	protected int stateLength = -1;
+	protected boolean usable = true;
+	protected ArrayList<XClassifier>[] buckets;
+	/**
+	 * From the packed (condition, action) key to the macro-classifier
+	 */
+	protected HashMap<Long, XClassifier> macroClassifiers = new HashMap<Long, XClassifier>();
+	/**
+	 * The order in which each indexed classifier was added
+	 */
+	protected IdentityHashMap<XClassifier, Long> serial = new IdentityHashMap<XClassifier, Long>();
+	protected long nextSerial = 0;
+
+	/**
+	 * @return false if some classifier cannot be indexed, in which case the index must not be used anymore
+	 */
+	public boolean isUsable() {
+		return usable;
+	}
+
+	/**
+	 * Pack the condition masks, the condition length, and the action into one key.
+	 */
+	protected static long macroKey(long care, long value, int length, int action) {
+		return ((long) length << 56) | (care << 32) | (value << 8) | action;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected boolean accept(XClassifier cl) {
+		if (!usable)
+			return false;
+		if (stateLength < 0) {
+			if (cl.getConditionLength() > MAX_STATE_BITS) {
+				usable = false;
+				return false;
+			}
+			stateLength = cl.getConditionLength();
+			buckets = new ArrayList[1 << stateLength];
+		}
+		if (cl.getConditionLength() != stateLength || cl.getAction() < 0 || cl.getAction() > 255) {
+			usable = false;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Index a macro-classifier which has just been appended to the population.
+	 */
+	public void add(XClassifier cl) {
+		if (!accept(cl))
+			return;
+		macroClassifiers.put(macroKey(cl.getCareMask(), cl.getValueMask(), stateLength, cl.getAction()), cl);
+		serial.put(cl, nextSerial++);
+		long free = ~cl.getCareMask() & ((1L << stateLength) - 1);
+		long sub = free;
+		//enumerate all subsets of the don't care bits (including the empty one)
+		while (true) {
+			int state = (int) (cl.getValueMask() | sub);
+			if (buckets[state] == null)
+				buckets[state] = new ArrayList<XClassifier>();
+			buckets[state].add(cl);
+			if (sub == 0)
+				break;
+			sub = (sub - 1) & free;
+		}
+	}
+
+	/**
+	 * Remove a macro-classifier which has just been removed from the population.
+	 */
+	public void remove(XClassifier cl) {
+		if (!usable || serial.remove(cl) == null)
+			return;
+		long key = macroKey(cl.getCareMask(), cl.getValueMask(), stateLength, cl.getAction());
+		if (macroClassifiers.get(key) == cl)
+			macroClassifiers.remove(key);
+		long free = ~cl.getCareMask() & ((1L << stateLength) - 1);
+		long sub = free;
+		while (true) {
+			buckets[(int) (cl.getValueMask() | sub)].remove(cl);
+			if (sub == 0)
+				break;
+			sub = (sub - 1) & free;
+		}
+	}
+
+	/**
+	 * @return the indexed macro-classifier with the same condition and action as the given classifier, or null if there is none
+	 */
+	public XClassifier find(XClassifier cl) {
+		if (cl.getConditionLength() != stateLength)
+			return null;
+		return macroClassifiers.get(macroKey(cl.getCareMask(), cl.getValueMask(), stateLength, cl.getAction()));
+	}
+
+	/**
+	 * @return the indexed classifiers that match the given state, in the order they were added to the population
+	 * @see XClassifier#match(long, long, int)
+	 */
+	public ArrayList<XClassifier> matching(long stateCare, long stateValue, int length) {
+		ArrayList<XClassifier> result = new ArrayList<XClassifier>();
+		if (length != stateLength)
+			return result;
+		long free = ~stateCare & ((1L << stateLength) - 1);
+		if (free == 0) {
+			if (buckets[(int) stateValue] != null)
+				result.addAll(buckets[(int) stateValue]);
+			return result;
+		}
+		//a classifier matches a state with don't care symbols if it matches any completion of that state;
+		//it may match several completions, so duplicates are removed before sorting
+		IdentityHashMap<XClassifier, Boolean> seen = new IdentityHashMap<XClassifier, Boolean>();
+		long sub = free;
+		while (true) {
+			ArrayList<XClassifier> bucket = buckets[(int) ((stateValue & stateCare) | sub)];
+			if (bucket != null)
+				for (XClassifier cl : bucket)
+					if (seen.put(cl, Boolean.TRUE) == null)
+						result.add(cl);
+			if (sub == 0)
+				break;
+			sub = (sub - 1) & free;
+		}
+		Collections.sort(result, new Comparator<XClassifier>() {
+			public int compare(XClassifier a, XClassifier b) {
+				long sa = serial.get(a);
+				long sb = serial.get(b);
+				return (sa < sb)? -1 : ((sa == sb)? 0 : 1);
+			}
+		});
+		return result;
+	}
+}
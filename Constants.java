@@ -62,6 +62,48 @@ public class Constants implements Serializable {
 	 * Control whether the recipient's judgment on the source's network position has some estimation error (value = true). 
 	 */
 	public static boolean switch_EST = true;
+	/**
+	 * Control whether agents are stepped in parallel (value = true) or one after another (value = false). @see ParallelStepper
+	 */
+	public static boolean switch_PAR = false;
+	/**
+	 * Control whether the network positions of all agents are evaluated once at the beginning of each tick (value = true)
+	 * or every time they are queried (value = false), in which case a position reflects the ties changed by agents that have stepped earlier in the same tick.
+	 * Positions are always evaluated once per tick when agents step in parallel. @see PositionTable
+	 */
+	public static boolean switch_POS = true;
+	/**
+	 * Control whether ties decay lazily, i.e., only expired ties are visited at each tick (value = true),
+	 * or every tie is re-weighted at each tick (value = false). @see TieDecay
+	 */
+	public static boolean switch_LTD = true;
+	/**
+	 * Control whether the social network is stored in primitive arrays (value = true), which is faster for headless runs,
+	 * or in the Repast projection (value = false). With primitive arrays, the ties of the projection are only kept up to date while the network is displayed. @see PrimitiveOrgNetwork
+	 */
+	public static boolean switch_PRM = false;
+	/**
+	 * Control whether the initial social network is generated by the model's own generators (value = true)
+	 * or by Repast's network generators (value = false). @see OrgNetworkGenerator
+	 */
+	public static boolean switch_NGN = true;
+	/**
+	 * Control whether output data are written by a background thread (value = true) or by the simulation thread (value = false). @see OutputPipeline
+	 */
+	public static boolean switch_ASY = true;
+	/**
+	 * Control whether the social network of every tick is written into a binary network file (value = true) or not (value = false). @see NetworkFrames
+	 */
+	public static boolean switch_NFR = false;
+	/**
+	 * Control whether the binary network file stores the changes since the previous tick (value = true) or the whole network of every tick (value = false).
+	 */
+	public static boolean switch_NFD = true;
+	/**
+	 * Control whether the number of triangles of every agent is kept up to date as ties change (value = true), so that the average clustering coefficient
+	 * can be read at every tick, or counted from scratch whenever it is needed (value = false). @see TriangleCounter
+	 */
+	public static boolean switch_TRI = false;
 	//***************************************************
 	//Model parameters (manipulative); each of these parameters should have a correspondent in parameters.xml file
 	/**
@@ -77,6 +119,29 @@ public class Constants implements Serializable {
 	 * indicate the minimal final strength of a decayed tie
 	 */
 	public static double tieDecayMin = 0.1;
+	/**
+	 * The number of threads used to step agents in parallel (0 means as many threads as available processors) @see #switch_PAR
+	 */
+	public static int numOfThreads = 0;
+	/**
+	 * The number of output records that can wait for the background writer thread @see #switch_ASY
+	 */
+	public static int outputQueueCapacity = 1024;
+	/**
+	 * The number of randomly chosen source nodes from which betweenness centrality is estimated (0 means all nodes, i.e., the exact value).
+	 * @see NetworkAnalysis#getBetweenness(NetworkSnapshot)
+	 */
+	public static int betweenSampleSize = 0;
+	/**
+	 * The number of randomly chosen agents beyond two steps of an agent that are considered as its potential bridging sources
+	 * (0 means all agents, i.e., a full search of the organization). @see Environment#collectBridgingSource(Context, ContextJungNetwork)
+	 */
+	public static int bridgeSampleSize = 0;
+	/**
+	 * Control what the simulation thread does when the output queue is full. It can (a) wait for the writer thread (value = 0), or
+	 * (b) write the oldest waiting records itself (value = 1). @see OutputPipeline
+	 */
+	public static int outputBackpressure = 0;
 	/**
 	 * This parameter predefines the probability of error when the recipient estimates a potential source's network position and their relationship.
 	 */
@@ -247,54 +312,6 @@ public class Constants implements Serializable {
 	 * Once the knowledge level is smaller than this value, I treat it as 0
 	 */
 	public static double smallValue = 0.0001;
-	/**
-	 * The initialization of the pseudo random generator. Must be at lest one and smaller than _M (see below).
-	 */
-	protected static long seed = 1;
-
-	/**
-	 * Constant for the random number generator (modulus of PMMLCG = 2^31 -1).
-	 */
-	protected static long _M = 2147483647;
-
-	/**
-	 * Constant for the random number generator (default = 16807).
-	 */
-	protected static long _A = 16807;
-	
-	/**
-	 * Constant for the random number generator (=_M/_A).
-	 */
-	protected static long _Q = _M / _A;
-	
-	/**
-	 * Constant for the random number generator (=_M mod _A).
-	 */
-	protected static long _R = _M % _A;
-
-	/**
-	 * Return a random number between 0 and 1.
-	 */
-	public static double drand() {
-		long hi = seed / _Q;
-		long lo = seed % _Q;
-		long test = _A * lo - _R * hi;
-
-		if (test > 0)
-			seed = test;
-		else
-			seed = test + _M;
-
-		return (double) seed / _M;
-	}
-
-	/**
-	 * Set a random seed in order to randomize the pseudo random generator.
-	 */
-	public static void setSeed(long s) {
-		seed = s;
-	}
-
 	/**
 	 * The default constructor.
 	 */
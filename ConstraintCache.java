@@ -0,0 +1,266 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class caches, for every agent, the sum of its tie weights (the denominator of all its normalized tie weights)
+ * and its Burt's constraint measure. @see NetworkAnalysis#constraint(ContextJungNetwork, OrgMember)
+ *
+ * An agent's constraint is needed every time it receives a knowledge request (@see Environment#getReplyProb(int)),
+ * whereas the network changes only when a tie is added, removed, or re-weighted. Thus the cached values are reused until
+ * a change of an incident tie invalidates them. When the tie between a and b changes,
+ * (a) the weight sums of a and b change, so do all normalized tie weights of a and b;
+ * (b) the constraint of a, b, and every neighbor of a or b changes, since the constraint of an agent i depends on
+ * the normalized tie weights of i and of i's neighbors. No other agent is affected.
+ *
+ * Each cached value carries a stamp. A value is valid only when its stamp equals the current generation,
+ * so invalidating every value at once (e.g., after all ties decay) only takes increasing the generation.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class ConstraintCache {
+
+	/**
+	 * The sum of each agent's tie weights; the index is the agent ID.
+	 */
+	protected double[] strengthSum;
+	/**
+	 * The constraint of each agent; the index is the agent ID.
+	 */
+	protected double[] constraint;
+	protected int[] sumStamp;
+	protected int[] constraintStamp;
+	/**
+	 * Cached values whose stamps differ from the current generation are invalid. The generation starts from 1,
+	 * so that the initial stamps (0) are all invalid.
+	 */
+	protected int generation = 1;
+	/**
+	 * While agents step in parallel, cached values are read but never written;
+	 * a value missing from the cache is computed by the reader without being stored. @see ParallelStepper
+	 */
+	protected volatile boolean readOnly = false;
+
+	/**
+	 * @param maxID
+	 * 		the largest agent ID in the network
+	 */
+	public ConstraintCache(int maxID) {
+		allocate(maxID + 1);
+	}
+
+	protected void allocate(int capacity) {
+		strengthSum = new double[capacity];
+		constraint = new double[capacity];
+		sumStamp = new int[capacity];
+		constraintStamp = new int[capacity];
+	}
+
+	/**
+	 * Make room for agents whose IDs exceed the current capacity.
+	 */
+	protected void ensureCapacity(int id) {
+		if (id < sumStamp.length)
+			return;
+		int capacity = Math.max(id + 1, sumStamp.length * 2);
+		double[] oldSum = strengthSum;
+		double[] oldConstraint = constraint;
+		int[] oldSumStamp = sumStamp;
+		int[] oldConstraintStamp = constraintStamp;
+		allocate(capacity);
+		System.arraycopy(oldSum, 0, strengthSum, 0, oldSum.length);
+		System.arraycopy(oldConstraint, 0, constraint, 0, oldConstraint.length);
+		System.arraycopy(oldSumStamp, 0, sumStamp, 0, oldSumStamp.length);
+		System.arraycopy(oldConstraintStamp, 0, constraintStamp, 0, oldConstraintStamp.length);
+	}
+
+	/**
+	 * @return the sum of the weights of all ties of the agent
+	 */
+	public double strengthSum(OrgNetwork net, OrgMember v) {
+		if (readOnly)
+			return peekStrengthSum(net, v);
+		int id = v.getID();
+		ensureCapacity(id);
+		if (sumStamp[id] != generation) {
+			strengthSum[id] = net.getStrengthSum(v);
+			sumStamp[id] = generation;
+		}
+		return strengthSum[id];
+	}
+
+	/**
+	 * Same as {@link #strengthSum(OrgNetwork, OrgMember)}, except that a value missing from the cache is computed
+	 * but not stored, so that the cache is only read.
+	 */
+	protected double peekStrengthSum(OrgNetwork net, OrgMember v) {
+		int id = v.getID();
+		if (id < sumStamp.length && sumStamp[id] == generation)
+			return strengthSum[id];
+		return net.getStrengthSum(v);
+	}
+
+	/**
+	 * @return the proportion of v1's network time and energy invested in the relationship with v2, using the cached weight sum of v1.
+	 * @see NetworkAnalysis#normalizedTieWeight(ContextJungNetwork, OrgMember, OrgMember)
+	 */
+	public double normalizedTieWeight(OrgNetwork net, OrgMember v1, OrgMember v2) {
+		if (v1.getID() == v2.getID())
+			return 0;
+		double weight = net.getWeight(v1, v2);
+		if (weight == 0)
+			return 0;
+		double denominator = strengthSum(net, v1);
+		if (denominator == 0)
+			return 0;
+		return weight / denominator;
+	}
+
+	/**
+	 * @return the local constraint on i from a lack of primary holes around j.
+	 * @see NetworkAnalysis#localConstraint(ContextJungNetwork, OrgMember, OrgMember)
+	 */
+	public double localConstraint(OrgNetwork net, OrgMember i, OrgMember j) {
+		double nmtw_ij = normalizedTieWeight(net, i, j);
+		double inner_result = 0;
+		for (OrgMember q : net.getAdjacent(i))
+			inner_result += normalizedTieWeight(net, i, q) * normalizedTieWeight(net, q, j);
+		return (nmtw_ij + inner_result) * (nmtw_ij + inner_result);
+	}
+
+	/**
+	 * @return the (cached) constraint of agent i
+	 * @see NetworkAnalysis#constraint(ContextJungNetwork, OrgMember)
+	 */
+	public double constraint(OrgNetwork net, OrgMember i) {
+		int id = i.getID();
+		if (readOnly) {
+			if (id < constraintStamp.length && constraintStamp[id] == generation)
+				return constraint[id];
+			return computeConstraint(net, i, null, 0., false);
+		}
+		ensureCapacity(id);
+		if (constraintStamp[id] != generation) {
+			constraint[id] = computeConstraint(net, i, null, 0., true);
+			constraintStamp[id] = generation;
+		}
+		return constraint[id];
+	}
+
+	/**
+	 * Evaluate what the constraint of agent i would be if the weight of its tie with agent j increased by delta
+	 * (a tie of weight delta is assumed if i and j are not connected).
+	 * The assumed tie only exists in the overlay of i's ego network built inside computeConstraint: neither the network nor the cache is changed,
+	 * so that several agents can evaluate their hypothetical ties at the same time.
+	 * @param delta
+	 * 		the assumed increment of tie weight
+	 */
+	public double hypotheticalConstraint(OrgNetwork net, OrgMember i, OrgMember j, double delta) {
+		return computeConstraint(net, i, j, delta, false);
+	}
+
+	/**
+	 * Compute the constraint of agent i, optionally under an assumed weight increment (delta) of the tie between i and j.
+	 * Under such an assumption, the weight sums of i and j increase by delta; j becomes one of i's neighbors if it is not;
+	 * all other weight sums stay the same, so they are taken from the cache.
+	 * The ties of i are collected once, so the measure takes O(d^2) tie lookups for an agent of degree d.
+	 * @param store
+	 * 		whether weight sums missing from the cache are stored into it
+	 */
+	protected double computeConstraint(OrgNetwork net, OrgMember i, OrgMember j, double delta, boolean store) {
+		ArrayList<OrgMember> alters = new ArrayList<OrgMember>();
+		ArrayList<Double> weights = new ArrayList<Double>();
+		double sum_i = 0;
+		int jIndex = -1;
+		for (OrgMember q : net.getAdjacent(i)) {
+			double w = net.getWeight(i, q);
+			if (j != null && q == j) {
+				w += delta;
+				jIndex = alters.size();
+			}
+			alters.add(q);
+			weights.add(w);
+			sum_i += w;
+		}
+		if (j != null && jIndex < 0 && j != i) {
+			jIndex = alters.size();
+			alters.add(j);
+			weights.add(delta);
+			sum_i += delta;
+		}
+		int d = alters.size();
+		if (d == 0 || sum_i == 0)
+			return 0;
+		double[] p_i = new double[d];
+		double[] sum_q = new double[d];
+		for (int x = 0; x < d; x++) {
+			p_i[x] = weights.get(x) / sum_i;
+			sum_q[x] = store? strengthSum(net, alters.get(x)) : peekStrengthSum(net, alters.get(x));
+			if (x == jIndex)
+				sum_q[x] += delta;
+		}
+		double result = 0;
+		for (int k = 0; k < d; k++) {
+			OrgMember alter_k = alters.get(k);
+			double inner_result = 0;
+			for (int x = 0; x < d; x++) {
+				if (x == k || p_i[x] == 0 || sum_q[x] == 0)
+					continue;
+				//the tie between two alters never involves i, so its weight is not affected by delta
+				double weight = net.getWeight(alters.get(x), alter_k);
+				if (weight != 0)
+					inner_result += p_i[x] * weight / sum_q[x];
+			}
+			result += (p_i[k] + inner_result) * (p_i[k] + inner_result);
+		}
+		return result;
+	}
+
+	/**
+	 * Invalidate the cached values affected by a change (addition, removal, or re-weighting) of the tie between a and b.
+	 * It can be called either before or after the change.
+	 */
+	public void tieChanged(OrgNetwork net, OrgMember a, OrgMember b) {
+		invalidate(a);
+		invalidate(b);
+		for (OrgMember q : net.getAdjacent(a))
+			invalidateConstraint(q);
+		for (OrgMember q : net.getAdjacent(b))
+			invalidateConstraint(q);
+	}
+
+	protected void invalidate(OrgMember v) {
+		int id = v.getID();
+		if (id < sumStamp.length) {
+			sumStamp[id] = 0;
+			constraintStamp[id] = 0;
+		}
+	}
+
+	protected void invalidateConstraint(OrgMember v) {
+		int id = v.getID();
+		if (id < constraintStamp.length)
+			constraintStamp[id] = 0;
+	}
+
+	/**
+	 * Make the cache read-only (or writable again). @see #readOnly
+	 */
+	public void setReadOnly(boolean value) {
+		readOnly = value;
+	}
+
+	/**
+	 * Invalidate every cached value, e.g., when all ties have decayed.
+	 */
+	public void invalidateAll() {
+		generation++;
+		if (generation == 0) {
+			//the stamps have wrapped around; start over so that no stale value looks valid
+			Arrays.fill(sumStamp, 0);
+			Arrays.fill(constraintStamp, 0);
+			generation = 1;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package orgKTNet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+
+/**
+ * This class keeps one buffered writer per output file for the whole run. @see DataIO
+ *
+ * Every record used to open its file (in appending mode), write a single row, flush, and close the file again;
+ * the task assignments, for example, were written that way once per member per problem.
+ * Now a file is opened the first time a record is written into it and stays open until the run ends (@see OutputPipeline#shutdown()).
+ * Rows are collected in a large buffer, which is written into the file when it is full (size-based flushing)
+ * or when some time has passed since the last flush (time-based flushing), so that the files can still be watched during a long run.
+ * Rows may be written by the background writer thread (@see OutputPipeline), so opening a file and flushing or closing files are synchronized.
+ *
+ * The files are the same as before, byte for byte: a file is appended to if it already exists,
+ * and the head row is written only if the file is created by this run.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class CsvWriterPool {
+
+	/**
+	 * The number of characters buffered for each file
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The longest time (in milliseconds) buffered rows may wait before they are written into the file
+	 */
+	public static final long FLUSH_INTERVAL = 5000;
+
+	/**
+	 * The open channels; the key is the absolute path of the file.
+	 */
+	protected static LinkedHashMap<String, Channel> channels = new LinkedHashMap<String, Channel>();
+
+	/**
+	 * An output file that stays open for the whole run
+	 */
+	public static class Channel {
+		protected final BufferedWriter writer;
+		/**
+		 * Whether the file has been created by this run and its head row has not been written yet
+		 */
+		protected boolean needsHeader;
+		protected long lastFlush;
+
+		protected Channel(File file) throws IOException {
+			needsHeader = file.createNewFile();
+			FileOutputStream output = new FileOutputStream(file, true);//the second parameter is true means appending
+			writer = new BufferedWriter(new OutputStreamWriter(output), BUFFER_SIZE);
+			lastFlush = System.currentTimeMillis();
+		}
+
+		public BufferedWriter getWriter() {
+			return writer;
+		}
+
+		/**
+		 * @return true only for the first call on a file created by this run, i.e., when the head row should be written
+		 */
+		public boolean takeHeader() {
+			boolean result = needsHeader;
+			needsHeader = false;
+			return result;
+		}
+
+		/**
+		 * Called after each record. Buffered rows are written into the file if they have waited long enough.
+		 */
+		public void endRecord() throws IOException {
+			long now = System.currentTimeMillis();
+			if (now - lastFlush >= FLUSH_INTERVAL) {
+				writer.flush();
+				lastFlush = now;
+			}
+		}
+
+		public void flush() throws IOException {
+			writer.flush();
+			lastFlush = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @param fileName
+	 * 		the path of the output file
+	 * @return the channel of the file, which is opened if it has not been
+	 * @throws IOException
+	 */
+	public static synchronized Channel open(String fileName) throws IOException {
+		File file = new File(fileName);
+		String key = file.getAbsolutePath();
+		Channel channel = channels.get(key);
+		if (channel == null) {
+			channel = new Channel(file);
+			channels.put(key, channel);
+		}
+		return channel;
+	}
+
+	/**
+	 * Write the buffered rows of a file (if it is open) into the file, e.g., before the file is read.
+	 * @param fileName
+	 * 		the path of the file
+	 */
+	public static synchronized void flush(String fileName) {
+		Channel channel = channels.get(new File(fileName).getAbsolutePath());
+		if (channel == null)
+			return;
+		try {
+			channel.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Flush and close all open files. Files written afterwards are opened again (in appending mode).
+	 */
+	public static synchronized void closeAll() {
+		for (Channel channel : channels.values()) {
+			try {
+				channel.writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		channels.clear();
+	}
+}
@@ -2,24 +2,21 @@ package orgKTNet;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.StringTokenizer;
 
 import repast.simphony.context.Context;
 import repast.simphony.context.space.graph.ContextJungNetwork;
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.environment.RunState;
-import repast.simphony.parameter.Parameters;
-import repast.simphony.space.graph.RepastEdge;
 
 public class DataIO {
 	/**
@@ -38,27 +35,33 @@ public class DataIO {
 	 * @throws IOException
 	 */
 	public static void outputPajek(String fileName, int orgSize, ContextJungNetwork<OrgMember> orgSocialNetwork){
+		outputPajek(fileName, orgSize, NetworkAnalysis.getTies(orgSocialNetwork));
+	}
+	
+	/**
+	 * Same as {@link #outputPajek(String, int, ContextJungNetwork)}, but the ties are taken from arrays, e.g., those of a generated network (@see OrgNetworkGenerator)
+	 * or those of the store of the network (@see NetworkAnalysis#getTies(ContextJungNetwork)).
+	 */
+	public static void outputPajek(String fileName, int orgSize, PajekTies ties){
 		try{
 			FileOutputStream output = new FileOutputStream(fileName, false);
 			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output));
-			writer.write("*Vertices " + orgSocialNetwork.size());
+			writer.write("*Vertices " + ties.numVertices);
 			writer.newLine();
 			for (int i = 1; i <= orgSize; i++) {
 				writer.write(i + " \"" + String.valueOf(i) + "\"");
 				writer.newLine();
 			}
-			if (orgSocialNetwork.numEdges() == 0)
+			if (ties.numOfTies == 0)
 				System.out.println(fileName + " is an empty network.");
-			else if (orgSocialNetwork.numEdges() == 1) {
+			else if (ties.numOfTies == 1) {
 				System.out.println(fileName + " only has one edge.");
 				writer.write("*Edge");
 			} else	
 				writer.write("*Edges");
 			writer.newLine();
-			for (RepastEdge<OrgMember> e : orgSocialNetwork.getEdges()) {
-				String n1_id = ((OrgMember) e.getSource()).getID();
-				String n2_id = ((OrgMember) e.getTarget()).getID();
-				writer.write(n1_id + " " + n2_id + " " + e.getWeight());
+			for (int t = 0; t < ties.numOfTies; t++) {
+				writer.write(ties.ends[2*t] + " " + ties.ends[2*t + 1] + " " + ties.weights[t]);
 				writer.newLine();
 			}
 			writer.flush();
@@ -81,6 +84,12 @@ public class DataIO {
      * 1 3 0.9 
      * 2 3 1.0 
      * </pre>
+     * The ties may be listed under "*Edges", "*Edge" (a network with a single tie), or "*Arcs" (a directed network) @see #outputPajek;
+     * arcs are read as undirected ties, so a later arc between the same pair of nodes overrides the strength of an earlier one.
+     * A tie without strength has strength 1. Vertex labels are ignored; vertex i is the member whose ID is i.
+     *
+     * The file is read line by line, and the ties are parsed into primitive arrays (@see #readPajek(String)) before they are added to the network.
+     * Members are looked up in an array indexed by member ID, which is built once, so loading a network takes O(N+E).
      * @param fileName
      * 		the Pajek file
 	 * @param net
@@ -88,59 +97,152 @@ public class DataIO {
 	 */
 	public static void inputPajek(String fileName, ContextJungNetwork<OrgMember> net){
 		try {
-			FileInputStream input = new FileInputStream(fileName);
-			BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-			String currentLine = null;
-			StringTokenizer tokenizer = null;
-			currentLine = reader.readLine();
-            tokenizer = new StringTokenizer(currentLine);
-            if (!tokenizer.nextToken().toLowerCase().startsWith("*vertices"))
-            	System.out.println("Pajek file parse error: '*vertices' not first token");
-            int numVertices = Integer.parseInt(tokenizer.nextToken());
-            if(numVertices != net.size())
-            	System.out.println("Pajek file parse error: the number of vertices does not match");
-            
-            //scan the .net file until reach the line of "*edge(s)"
-            do{
-            	currentLine = reader.readLine().trim();
-            } while (!currentLine.startsWith("*"));
-            
-			int currentStartId = -1;
-            int currentEndId = -1;
-            //the starting line in the following "while" statement is the line right below "edges"
-            //since the previous "while" statement ends with reading the line with "edges" 
-            while ((currentLine = reader.readLine()) != null){
-                currentLine = currentLine.trim();
-                if (currentLine.length() == 0) {
-                    break;
-                }     
-                if (currentLine.startsWith("*" ))
-                    continue;
-                tokenizer = new StringTokenizer(currentLine);
-                currentStartId = Integer.parseInt(tokenizer.nextToken());              
-                currentEndId = Integer.parseInt(tokenizer.nextToken());
-                double weight = Double.parseDouble(tokenizer.nextToken());
-                if (currentStartId == currentEndId) {
-                    System.out.println("Same source and target nodes");
-                    break;
-                }
-                OrgMember start = null;
-                OrgMember end = null;
-                for(OrgMember om : net.getNodes()){
-                	int id = Integer.parseInt(om.getID());
-                	if(id == currentStartId) start = om;
-                	if(id == currentEndId) end = om;
-                	if(start!=null && end!=null) break;
-                }
-                if(!net.isAdjacent(start, end))
-                	net.addEdge(start, end, weight);
-                else
-                	net.getEdge(start, end).setWeight(weight);
-            }
+			PajekTies ties = readPajek(fileName);
+			if (ties == null)
+				return;
+			if(ties.numVertices != net.size())
+				System.out.println("Pajek file parse error: the number of vertices does not match");
+			//from member ID to member, built once instead of scanning all nodes for every tie
+			int maxID = 0;
+			for(OrgMember om : net.getNodes())
+				maxID = Math.max(maxID, om.getID());
+			OrgMember[] members = new OrgMember[maxID + 1];
+			for(OrgMember om : net.getNodes())
+				members[om.getID()] = om;
+			for (int i = 0; i < ties.numOfTies; i++){
+				int startID = ties.ends[2*i];
+				int endID = ties.ends[2*i + 1];
+				OrgMember start = (startID > 0 && startID <= maxID)? members[startID] : null;
+				OrgMember end = (endID > 0 && endID <= maxID)? members[endID] : null;
+				if (start == null || end == null){
+					System.out.println("Pajek file parse error: no member for the tie " + startID + " " + endID);
+					continue;
+				}
+				NetworkAnalysis.addInitialTie(net, start, end, ties.weights[i]);
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * A list of ties in primitive arrays, e.g., the ties read from a Pajek file or all ties of the network; the i-th tie is between ends[2*i] and ends[2*i+1]
+	 * (agent IDs) and has strength weights[i].
+	 */
+	protected static class PajekTies {
+		int numVertices;
+		int numOfTies = 0;
+		int[] ends = new int[64];
+		double[] weights = new double[32];
+
+		void add(int startID, int endID, double weight){
+			if (numOfTies == weights.length){
+				ends = Arrays.copyOf(ends, ends.length * 2);
+				weights = Arrays.copyOf(weights, weights.length * 2);
+			}
+			ends[2*numOfTies] = startID;
+			ends[2*numOfTies + 1] = endID;
+			weights[numOfTies] = weight;
+			numOfTies++;
+		}
+	}
+
+	/**
+	 * Parse the ties of a Pajek file. @see #inputPajek(String, ContextJungNetwork)
+	 * @return the ties, or null if the file does not start with "*vertices"
+	 */
+	protected static PajekTies readPajek(String fileName) throws IOException{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)), 1 << 16);
+		try {
+			String currentLine = reader.readLine();
+			int lineNumber = 1;
+			if (currentLine == null || !currentLine.trim().toLowerCase().startsWith("*vertices")){
+				System.out.println("Pajek file parse error: '*vertices' not first token");
+				return null;
+			}
+			PajekTies ties = new PajekTies();
+			int p = nextToken(currentLine, 0);
+			p = nextToken(currentLine, tokenEnd(currentLine, p));
+			ties.numVertices = parseInt(currentLine, p, tokenEnd(currentLine, p));
+			boolean inTies = false;
+			while ((currentLine = reader.readLine()) != null){
+				lineNumber++;
+				p = nextToken(currentLine, 0);
+				if (p == currentLine.length())
+					continue;
+				if (currentLine.charAt(p) == '*'){
+					String section = currentLine.substring(p, tokenEnd(currentLine, p)).toLowerCase();
+					inTies = section.equals("*edges") || section.equals("*edge") || section.equals("*arcs") || section.equals("*arc");
+					if (!inTies && !section.equals("*vertices"))
+						System.out.println("Pajek file parse error: section " + section + " is not supported and skipped");
+					continue;
+				}
+				if (!inTies)
+					continue;//a vertex line
+				int startID, endID;
+				double weight = 1.;
+				try {
+					int q = tokenEnd(currentLine, p);
+					startID = parseInt(currentLine, p, q);
+					p = nextToken(currentLine, q);
+					q = tokenEnd(currentLine, p);
+					endID = parseInt(currentLine, p, q);
+					p = nextToken(currentLine, q);
+					if (p < currentLine.length())
+						weight = Double.parseDouble(currentLine.substring(p, tokenEnd(currentLine, p)));
+				} catch (NumberFormatException e) {
+					System.out.println("Pajek file parse error: line " + lineNumber + " is not a tie");
+					continue;
+				}
+				if (startID == endID) {
+					System.out.println("Same source and target nodes");
+					continue;
+				}
+				ties.add(startID, endID, weight);
+			}
+			return ties;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return the position of the first non-blank character of the line at or after from (the length of the line if there is none)
+	 */
+	protected static int nextToken(String line, int from){
+		while (from < line.length() && Character.isWhitespace(line.charAt(from)))
+			from++;
+		return from;
+	}
+
+	/**
+	 * @return the position right after the token starting at from
+	 */
+	protected static int tokenEnd(String line, int from){
+		while (from < line.length() && !Character.isWhitespace(line.charAt(from)))
+			from++;
+		return from;
+	}
+
+	/**
+	 * Parse a (possibly signed) decimal integer from line[from, to) without creating a substring.
+	 */
+	protected static int parseInt(String line, int from, int to){
+		if (from >= to)
+			throw new NumberFormatException("empty token");
+		boolean negative = line.charAt(from) == '-';
+		int i = (negative || line.charAt(from) == '+')? from + 1 : from;
+		if (i == to)
+			throw new NumberFormatException(line.substring(from, to));
+		int value = 0;
+		for (; i < to; i++){
+			int digit = line.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException(line.substring(from, to));
+			value = value * 10 + digit;
+		}
+		return negative? -value : value;
+	}
 	
 	/**
 	 * Input predefined task assignments (a problem with certain ID) from an existing csv file.
@@ -152,6 +254,9 @@ public class DataIO {
 	 */
 	public static void inputTaskAssign(String fileName, String problemID, Context<Object> context){
 		try {
+			//the file may have been written in this run and still have queued or buffered rows
+			OutputPipeline.drain();
+			CsvWriterPool.flush(fileName);
 			FileInputStream input = new FileInputStream(fileName);
 			BufferedReader reader = new BufferedReader(new InputStreamReader(input));
 			String currentLine = null;
@@ -161,15 +266,16 @@ public class DataIO {
             	currentLine = reader.readLine().trim();
             } while (!currentLine.startsWith(problemID));
             
-            HashMap<String, int[]> temp = new HashMap<String, int[]>();
+            HashMap<Integer, int[]> temp = new HashMap<Integer, int[]>();
             while (currentLine != null && currentLine.startsWith(problemID)){
             	String[] assemble = currentLine.split(",");
             	int[] tasks = new int[assemble.length - 2];
             	//assemble[0] is problem#, assemble[1] is member#, and the rest are task-required areas
             	for(int i = 0; i < tasks.length; i++)
             		tasks[i] = Integer.parseInt(assemble[i+2]);
-            	if(temp.containsKey(assemble[1])) System.out.println("OM already exists. DataIOL168\n");
-            	temp.put(assemble[1], tasks);
+            	int memberID = Integer.parseInt(assemble[1]);
+            	if(temp.containsKey(memberID)) System.out.println("OM already exists. DataIOL168\n");
+            	temp.put(memberID, tasks);
             	currentLine = reader.readLine();
             	if(currentLine!=null) currentLine = currentLine.trim(); 
             }
@@ -180,9 +286,8 @@ public class DataIO {
     			OrgMember om = (OrgMember)members.next();
     			om.getTaskEnvironment().currentTask = temp.get(om.getID());
     			om.getTaskEnvironment().reset();
-    			Parameters params = RunEnvironment.getInstance().getParameters();
-    			int taskRange = (Integer) params.getValue("taskRange");
-    			int conditionID = (Integer) params.getValue("conditionID");
+    			int taskRange = om.config.taskRange;
+    			int conditionID = om.config.conditionID;
     			outputTaskAssign("output/task" + Integer.toString(conditionID) + ".csv", taskRange, om, problemID);
     		}
 		} catch (IOException e) {
@@ -202,6 +307,9 @@ public class DataIO {
 	 */
 	public static void inputExpertise(String fileName, String tick, int memberArea, Context<Object> context){
 		try {
+			//the file may have been written in this run and still have queued or buffered rows
+			OutputPipeline.drain();
+			CsvWriterPool.flush(fileName);
 			FileInputStream input = new FileInputStream(fileName);
 			BufferedReader reader = new BufferedReader(new InputStreamReader(input));
 			String currentLine = null;
@@ -211,7 +319,7 @@ public class DataIO {
             	currentLine = reader.readLine();
             } while (!currentLine.startsWith(tick));
             
-            HashMap<String, BoundedSortedMap<Integer, SpecialtyArea>> temp = new HashMap<String, BoundedSortedMap<Integer, SpecialtyArea>>();
+            HashMap<Integer, BoundedSortedMap<Integer, SpecialtyArea>> temp = new HashMap<Integer, BoundedSortedMap<Integer, SpecialtyArea>>();
             while (currentLine != null && currentLine.startsWith(tick)){
             	String[] assemble = currentLine.split(",");
             	BoundedSortedMap<Integer, SpecialtyArea> areas = new BoundedSortedMap<Integer, SpecialtyArea>(memberArea);
@@ -219,8 +327,9 @@ public class DataIO {
             	for(int i = 0; i < assemble.length - 2; i++)
             		if(!assemble[i+2].equals("0"))
             			areas.put(i, new SpecialtyArea(Double.parseDouble(assemble[i+2]), -1));
-            	if(temp.containsKey(assemble[1])) System.out.println("OM already exists. DataIOL168\n");
-            	temp.put(assemble[1], areas);
+            	int memberID = Integer.parseInt(assemble[1]);
+            	if(temp.containsKey(memberID)) System.out.println("OM already exists. DataIOL168\n");
+            	temp.put(memberID, areas);
             	currentLine = reader.readLine(); 
             }
 
@@ -235,13 +344,25 @@ public class DataIO {
 		}
 	}
 	
-	public static void outputTimeSeriesData(String conditionID, int currentTick, double scPerc, double ndPerc, double rbPerc, ContextJungNetwork<OrgMember> orgSocialNetwork, double percOfFinish){
+	/**
+	 * Output the preferences of agents and some network measures at the current tick.
+	 * The network measures are kept up to date by NetworkStats, so they are read on the simulation thread instead of taken from a snapshot of the network. @see OutputPipeline
+	 */
+	public static void outputTimeSeriesData(final String conditionID, final int currentTick, final double scPerc, final double ndPerc, final double rbPerc, ContextJungNetwork<OrgMember> orgSocialNetwork, final double percOfFinish){
+		final double avgTieStrength = NetworkAnalysis.networkStats.getAvgTieStrength();
+		final int numOfTies = NetworkAnalysis.networkStats.getNumOfTies();
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writeTimeSeriesData(conditionID, currentTick, scPerc, ndPerc, rbPerc, avgTieStrength, numOfTies, percOfFinish);
+			}
+		});
+	}
+
+	protected static void writeTimeSeriesData(String conditionID, int currentTick, double scPerc, double ndPerc, double rbPerc, double avgTieStrength, int numOfTies, double percOfFinish){
 		try{
-			File tResult = new File("output/TimeSeries" + conditionID + ".csv");
-			boolean newFile = tResult.createNewFile();
-			FileOutputStream file = new FileOutputStream(tResult, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
-			if(newFile){//if the file does not exist
+			CsvWriterPool.Channel channel = CsvWriterPool.open("output/TimeSeries" + conditionID + ".csv");
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				writer.append("Tick");
 			    writer.append(',');
 			    //the percent of agents who prefer bonding structures
@@ -272,14 +393,13 @@ public class DataIO {
 			writer.append(',');
 			writer.append(Double.toString(rbPerc));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getAvgTieStrength(orgSocialNetwork)));
+			writer.append(String.valueOf(avgTieStrength));
 			writer.append(',');
-			writer.append(String.valueOf(orgSocialNetwork.numEdges()));
+			writer.append(String.valueOf(numOfTies));
 			writer.append(',');
 			writer.append(String.valueOf(percOfFinish));
 			writer.newLine();
-			writer.flush();
-			writer.close();
+			channel.endRecord();
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -287,18 +407,42 @@ public class DataIO {
 	/**
 	 * Output the data of individual performance into a .csv file
 	 * The AvgLearning is the sum of initial knowledge gap divided by the time cost.
+	 * The network measures are computed by the writer thread from a snapshot of the current network. @see OutputPipeline
+	 * If the triangles are counted incrementally (@see TriangleCounter), the average clustering coefficient is read from the counts on the simulation thread instead.
 	 * @param currentProblem
 	 * 		the ID of the problem under processing
 	 * @param context 
 	 * @throws Exception
 	 */
-	public static void outputPerform(String conditionID, int currentProblem, int totalTime, double avgTime, double scRatio, ContextJungNetwork<OrgMember> orgSocialNetwork){
+	public static void outputPerform(final String conditionID, final int currentProblem, final int totalTime, final double avgTime, final double scRatio, ContextJungNetwork<OrgMember> orgSocialNetwork){
+		final NetworkSnapshot snapshot = NetworkAnalysis.snapshot(orgSocialNetwork);
+		final Double avgClusterCoeff = countedClusterCoeff(orgSocialNetwork);
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writePerform(conditionID, currentProblem, totalTime, avgTime, scRatio, snapshot, avgClusterCoeff);
+			}
+		});
+	}
+
+	/**
+	 * @return the average clustering coefficient of the network read from the triangle counts, or null if the triangles are not counted incrementally.
+	 * The counts follow the network as the agents change it, so they must be read on the simulation thread. @see TriangleCounter
+	 */
+	protected static Double countedClusterCoeff(ContextJungNetwork<OrgMember> orgSocialNetwork){
+		if(NetworkAnalysis.triangleCounter == null)
+			return null;
+		return NetworkAnalysis.getAvgClusterCoeff(orgSocialNetwork);
+	}
+
+	/**
+	 * @param avgClusterCoeff
+	 * 		the average clustering coefficient read from the triangle counts, or null if it is computed from the snapshot
+	 */
+	protected static void writePerform(String conditionID, int currentProblem, int totalTime, double avgTime, double scRatio, NetworkSnapshot snapshot, Double avgClusterCoeff){
 		try{
-			File pResult = new File("output/performance" + conditionID + ".csv");
-			boolean newFile = pResult.createNewFile();
-			FileOutputStream file = new FileOutputStream(pResult, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
-			if(newFile){//if the file does not exist
+			CsvWriterPool.Channel channel = CsvWriterPool.open("output/performance" + conditionID + ".csv");
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				//create the head row of the .csv file
 			    writer.append("Problem");
 			    writer.append(',');
@@ -324,30 +468,70 @@ public class DataIO {
 			writer.append(',');
 			writer.append(Double.toString(scRatio));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getHybridTriadProportion(orgSocialNetwork)));
+			long[] triadCounts = NetworkAnalysis.getModifiedTriadCensus(snapshot, NetworkAnalysis.getAvgTieStrength(snapshot));
+			writer.append(String.valueOf(NetworkAnalysis.getHybridTriadProportion(triadCounts)));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getAvgClusterCoeff(orgSocialNetwork)));
+			writer.append(String.valueOf((avgClusterCoeff != null)? avgClusterCoeff.doubleValue() : NetworkAnalysis.getAvgClusterCoeff(snapshot)));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getBetweenCentralization(orgSocialNetwork)));
+			writer.append(String.valueOf(NetworkAnalysis.getBetweenCentralization(snapshot)));
 			writer.newLine();
-			writer.flush();
-			writer.close();
+			channel.endRecord();
+			writeTriadCensus(conditionID, currentProblem, triadCounts);
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Output the number of triads of every type in the modified triad census (@see NetworkAnalysis#getModifiedTriadCensus(NetworkSnapshot, double))
+	 * when a problem is solved. The census is taken anyway for the performance data, so the whole vector costs nothing extra.
+	 * It goes into its own file so that the columns of existing performance files stay the same.
+	 */
+	protected static void writeTriadCensus(String conditionID, int currentProblem, long[] triadCounts) throws IOException{
+		CsvWriterPool.Channel channel = CsvWriterPool.open("output/triads" + conditionID + ".csv");
+		BufferedWriter writer = channel.getWriter();
+		if(channel.takeHeader()){//if the file does not exist
+			writer.append("Problem");
+			for(int i = 1; i < NetworkAnalysis.TRIAD_NAMES.length; i++){
+				writer.append(',');
+				writer.append("T" + NetworkAnalysis.TRIAD_NAMES[i]);
+			}
+			writer.newLine();
+		}
+		writer.append(Integer.toString(currentProblem));
+		for(int i = 1; i < triadCounts.length; i++){
+			writer.append(',');
+			writer.append(Long.toString(triadCounts[i]));
+		}
+		writer.newLine();
+		channel.endRecord();
+	}
+
 	/**
 	 * Output the network structural data at each step into a .csv file
+	 * As with @see #outputPerform(String, int, int, double, double, ContextJungNetwork), the measures are computed from a snapshot by the writer thread,
+	 * except the average clustering coefficient if the triangles are counted incrementally.
 	 * @throws Exception
 	 */
-	public static void outputNetworkPerStep(int conditionID, ContextJungNetwork<OrgMember> orgSocialNetwork){
+	public static void outputNetworkPerStep(final int conditionID, ContextJungNetwork<OrgMember> orgSocialNetwork){
+		final int currentTick = (int) RunEnvironment.getInstance().getCurrentSchedule().getTickCount();
+		final NetworkSnapshot snapshot = NetworkAnalysis.snapshot(orgSocialNetwork);
+		final Double avgClusterCoeff = countedClusterCoeff(orgSocialNetwork);
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writeNetworkPerStep(conditionID, currentTick, snapshot, avgClusterCoeff);
+			}
+		});
+	}
+
+	/**
+	 * @see #writePerform(String, int, int, double, double, NetworkSnapshot, Double)
+	 */
+	protected static void writeNetworkPerStep(int conditionID, int currentTick, NetworkSnapshot snapshot, Double avgClusterCoeff){
 		try{
-			File pResult = new File("output/networkPerStep" + conditionID + ".csv");
-			boolean newFile = pResult.createNewFile();
-			FileOutputStream file = new FileOutputStream(pResult, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
-			if(newFile){//if the file does not exist
+			CsvWriterPool.Channel channel = CsvWriterPool.open("output/networkPerStep" + conditionID + ".csv");
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				//create the head row of the .csv file
 			    writer.append("Tick");
 			    writer.append(',');
@@ -358,17 +542,15 @@ public class DataIO {
 			    writer.append("HTP");
 			    writer.newLine();
 			}
-			int currentTick = (int) RunEnvironment.getInstance().getCurrentSchedule().getTickCount();
 			writer.append(Integer.toString(currentTick));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getHybridTriadProportion(orgSocialNetwork)));
+			writer.append(String.valueOf(NetworkAnalysis.getHybridTriadProportion(snapshot)));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getAvgClusterCoeff(orgSocialNetwork)));
+			writer.append(String.valueOf((avgClusterCoeff != null)? avgClusterCoeff.doubleValue() : NetworkAnalysis.getAvgClusterCoeff(snapshot)));
 			writer.append(',');
-			writer.append(String.valueOf(NetworkAnalysis.getBetweenCentralization(orgSocialNetwork)));
+			writer.append(String.valueOf(NetworkAnalysis.getBetweenCentralization(snapshot)));
 			writer.newLine();
-			writer.flush();
-			writer.close();
+			channel.endRecord();
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -383,15 +565,21 @@ public class DataIO {
 	 * 		the organizational member whose task-required areas are output
 	 * @param currentProblem
 	 */
-	public static void outputTaskAssign(String fileName, int taskRange, OrgMember om, String currentProblem){
-		try{
-			File assignment = new File(fileName);
-			boolean newFile = assignment.createNewFile();
-			FileOutputStream file = new FileOutputStream(assignment, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
+	public static void outputTaskAssign(final String fileName, final int taskRange, OrgMember om, final String currentProblem){
+		final int memberID = om.getID();
+		final int[] task = om.taskEnv.currentTask.clone();
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writeTaskAssign(fileName, taskRange, memberID, task, currentProblem);
+			}
+		});
+	}
 
-	
-			if(newFile){//if the file does not exist
+	protected static void writeTaskAssign(String fileName, int taskRange, int memberID, int[] task, String currentProblem){
+		try{
+			CsvWriterPool.Channel channel = CsvWriterPool.open(fileName);
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				//create the head row of the .csv file
 			    writer.append("Problem");
 			    writer.append(',');
@@ -405,15 +593,14 @@ public class DataIO {
 			
 			writer.append(currentProblem);
 			writer.append(',');
-			writer.append(om.getID());
+			writer.append(Integer.toString(memberID));
 			for(int j = 0; j < taskRange; j++){
 				writer.append(',');
-				writer.append(String.valueOf(om.taskEnv.currentTask[j]));
+				writer.append(String.valueOf(task[j]));
 			}
 			writer.newLine();
 			
-			writer.flush();
-			writer.close();
+			channel.endRecord();
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -430,15 +617,27 @@ public class DataIO {
 	 * 		the list of organizational members
 	 * @param currentTick
 	 */
-	public static void outputExpertise(String fileName, int orgArea, int memberArea, ArrayList<OrgMember> list, int currentTick){
-		try{
-			File assignment = new File(fileName);
-			boolean newFile = assignment.createNewFile();
-			FileOutputStream file = new FileOutputStream(assignment, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
+	public static void outputExpertise(final String fileName, final int orgArea, int memberArea, ArrayList<OrgMember> list, final int currentTick){
+		final int[] memberIDs = new int[list.size()];
+		final double[][] levels = new double[list.size()][orgArea];
+		for(int i = 0; i < memberIDs.length; i++){
+			OrgMember om = list.get(i);
+			memberIDs[i] = om.getID();
+			for(int j = 0; j < orgArea; j++)
+				levels[i][j] = om.getExpertise(j);
+		}
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writeExpertise(fileName, orgArea, memberIDs, levels, currentTick);
+			}
+		});
+	}
 
-	
-			if(newFile){//if the file does not exist
+	protected static void writeExpertise(String fileName, int orgArea, int[] memberIDs, double[][] levels, int currentTick){
+		try{
+			CsvWriterPool.Channel channel = CsvWriterPool.open(fileName);
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				//create the head row of the .csv file
 			    writer.append("Tick#");
 			    writer.append(',');
@@ -449,18 +648,17 @@ public class DataIO {
 			    }
 			    writer.newLine();
 			}
-			for(OrgMember om : list){
+			for(int i = 0; i < memberIDs.length; i++){
 				writer.append(Integer.toString(currentTick));
 				writer.append(',');
-				writer.append(om.getID());
+				writer.append(Integer.toString(memberIDs[i]));
 				for(int j = 0; j < orgArea; j++){
 					writer.append(',');
-					writer.append(String.valueOf(om.getExpertise(j)));
+					writer.append(String.valueOf(levels[i][j]));
 				}
 				writer.newLine();
 			}
-			writer.flush();
-			writer.close();
+			channel.endRecord();
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -473,15 +671,21 @@ public class DataIO {
 	 * @param strategyChain
 	 * 		the type is Linkedlist 
 	 */
-	public static void outputStrategyChain(String fileName, int currentProblem, OrgMember om) {
-		try{
-			File assignment = new File(fileName);
-			boolean newFile = assignment.createNewFile();
-			FileOutputStream file = new FileOutputStream(assignment, true);//the second parameter is true means appending
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));	
+	public static void outputStrategyChain(final String fileName, final int currentProblem, OrgMember om) {
+		final int memberID = om.getID();
+		final ArrayList<Integer> strategyChain = new ArrayList<Integer>(om.strategyChain);
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				writeStrategyChain(fileName, currentProblem, memberID, strategyChain);
+			}
+		});
+	}
 
-	
-			if(newFile){//if the file does not exist
+	protected static void writeStrategyChain(String fileName, int currentProblem, int memberID, ArrayList<Integer> strategyChain) {
+		try{
+			CsvWriterPool.Channel channel = CsvWriterPool.open(fileName);
+			BufferedWriter writer = channel.getWriter();
+			if(channel.takeHeader()){//if the file does not exist
 				//create the head row of the .csv file
 			    writer.append("Problem#");
 			    writer.append(',');
@@ -493,15 +697,14 @@ public class DataIO {
 			
 			writer.append(Integer.toString(currentProblem));
 			writer.append(',');
-			writer.append(om.getID());
-			Iterator<Integer> it = om.strategyChain.iterator();
+			writer.append(Integer.toString(memberID));
+			Iterator<Integer> it = strategyChain.iterator();
 			while(it.hasNext()){
 				writer.append(',');
 				writer.append(String.valueOf(it.next()));
 			}
 			writer.newLine();			
-			writer.flush();
-			writer.close();
+			channel.endRecord();
 		}catch (IOException e) {
 			e.printStackTrace();
 		}
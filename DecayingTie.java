@@ -0,0 +1,76 @@
+package orgKTNet;
+
+import repast.simphony.space.graph.EdgeCreator;
+import repast.simphony.space.graph.RepastEdge;
+
+/**
+ * A tie of the organizational social network whose strength decays lazily. @see TieDecay
+ *
+ * Every tie loses Constants.tieDecayMin of its strength at every decay (@see NetworkAnalysis#tieDecayRemove(ContextJungNetwork)).
+ * Instead of being re-weighted at every decay, a tie keeps the strength it had when it was last set and the decay count at that time,
+ * and its current strength is computed whenever it is read. Since getWeight() is overridden, everything that reads the strength of a tie
+ * (the constraint measures, the snapshots, the output, the display, etc.) sees the decayed strength.
+ * A tie does not queue itself for removal or decay the historical strength of its pair; NetworkAnalysis tells the decay when a tie changes (@see TieDecay#schedule(int, int)).
+ * If the network is stored in primitive arrays (@see Constants#switch_PRM), the decaying ties of the projection only show the decayed strength on the display.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class DecayingTie<T> extends RepastEdge<T> {
+
+	/**
+	 * The strength of the tie when it was last set
+	 */
+	protected double base;
+	/**
+	 * The decay count when the strength was last set
+	 */
+	protected int touched;
+	/**
+	 * The decay count up to which the historical strength of the pair has been decayed. @see TieDecay#settleHistory(int, int)
+	 */
+	protected int historyStamp;
+
+	public DecayingTie(T source, T target, boolean directed, double weight) {
+		super(source, target, directed, weight);
+		base = weight;
+		TieDecay decay = NetworkAnalysis.tieDecay;
+		touched = (decay == null)? 0 : decay.getClock();
+		historyStamp = touched;
+	}
+
+	/**
+	 * @return the current (decayed) strength of the tie
+	 */
+	@Override
+	public double getWeight() {
+		TieDecay decay = NetworkAnalysis.tieDecay;
+		return (decay == null)? base : getWeight(decay.getClock());
+	}
+
+	/**
+	 * @return the strength of the tie after the given number of decays in the run, provided that the strength is not set again meanwhile
+	 */
+	public double getWeight(int clock) {
+		return TieDecay.weight(base, touched, clock);
+	}
+
+	@Override
+	public void setWeight(double weight) {
+		TieDecay decay = NetworkAnalysis.tieDecay;
+		base = weight;
+		touched = (decay == null)? 0 : decay.getClock();
+	}
+
+	/**
+	 * Make the network create decaying ties. @see NetworkBuilder#setEdgeCreator(EdgeCreator)
+	 */
+	public static class Creator<T> implements EdgeCreator<DecayingTie<T>, T> {
+		public Class<?> getEdgeType() {
+			return DecayingTie.class;
+		}
+
+		public DecayingTie<T> createEdge(T source, T target, boolean isDirected, double weight) {
+			return new DecayingTie<T>(source, target, isDirected, weight);
+		}
+	}
+}
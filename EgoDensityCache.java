@@ -0,0 +1,155 @@
+package orgKTNet;
+
+import java.util.Arrays;
+
+/**
+ * This class caches the density of every agent's ego network. @see Environment#getEgoNetworkDensity(OrgMember)
+ *
+ * The density of an agent's ego network is needed every time the agent's network position is evaluated (@see Environment#getPosition(int, boolean)),
+ * i.e., for the focal agent and for every candidate source it considers, many times per tick, whereas the network changes far less often.
+ * It used to be computed by testing all O(d^2) pairs of the ego and its neighbors for adjacency.
+ * Now the ties among the neighbors are counted by intersecting the sorted ID lists of the ego's neighbors and of each neighbor's neighbors,
+ * which takes O(d log d + the sum of the neighbors' degrees), and the result is reused until a change of a tie invalidates it.
+ * If the triangles of every agent are kept (@see TriangleCounter), the ties among the neighbors are just the agent's triangles.
+ *
+ * When a tie between a and b is added or removed, the ego networks of a and b change, and so do the ego networks of the common neighbors of a and b,
+ * which contain the tie. All common neighbors are neighbors of a, so the values of a, b, and a's neighbors are invalidated.
+ * Re-weighting a tie does not change any density.
+ *
+ * Like @see ConstraintCache, each cached value carries a stamp, and the cache is only read while agents step in parallel.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class EgoDensityCache {
+
+	/**
+	 * The ego network density of each agent; the index is the agent ID.
+	 */
+	protected double[] density;
+	protected int[] stamp;
+	/**
+	 * Cached values whose stamps differ from the current generation are invalid. @see ConstraintCache#generation
+	 */
+	protected int generation = 1;
+	/**
+	 * @see ConstraintCache#readOnly
+	 */
+	protected volatile boolean readOnly = false;
+
+	/**
+	 * @param maxID
+	 * 		the largest agent ID in the network
+	 */
+	public EgoDensityCache(int maxID) {
+		density = new double[maxID + 1];
+		stamp = new int[maxID + 1];
+	}
+
+	protected void ensureCapacity(int id) {
+		if (id < stamp.length)
+			return;
+		int capacity = Math.max(id + 1, stamp.length * 2);
+		density = Arrays.copyOf(density, capacity);
+		stamp = Arrays.copyOf(stamp, capacity);
+	}
+
+	/**
+	 * @return the (cached) density of the agent's ego network
+	 */
+	public double density(OrgNetwork net, OrgMember om) {
+		int id = om.getID();
+		if (readOnly) {
+			if (id < stamp.length && stamp[id] == generation)
+				return density[id];
+			return computeDensity(net, om);
+		}
+		ensureCapacity(id);
+		if (stamp[id] != generation) {
+			density[id] = computeDensity(net, om);
+			stamp[id] = generation;
+		}
+		return density[id];
+	}
+
+	/**
+	 * Compute the density of the agent's ego network (the agent, its neighbors, and the ties among them) from scratch.
+	 */
+	protected double computeDensity(OrgNetwork net, OrgMember om) {
+		int degree = net.getDegree(om);
+		// "+1" refers to the ego.
+		int numOfNodes = degree + 1;
+		if (numOfNodes < 2)
+			return 0.0;
+		long numOfEdges = degree;
+		if (NetworkAnalysis.triangleCounter != null)
+			numOfEdges += NetworkAnalysis.triangleCounter.getTriangles(om);
+		else {
+			int[] egoRow = net.getNeighborIDs(om);
+			long sharedSum = 0;
+			for (int k = 0; k < degree; k++) {
+				OrgMember neighbor = MemberRegistry.get(egoRow[k]);
+				sharedSum += countCommon(egoRow, degree, net.getNeighborIDs(neighbor), net.getDegree(neighbor));
+			}
+			//every tie among the neighbors has been counted from both of its ends
+			numOfEdges += sharedSum / 2;
+		}
+		long maxNumOfEdges = (long) numOfNodes * (numOfNodes - 1) / 2;
+		return (double) numOfEdges / (double) maxNumOfEdges;
+	}
+
+	/**
+	 * @return the number of IDs that appear in both sorted lists, which are the first lengthA entries of a and the first lengthB entries of b
+	 */
+	protected static int countCommon(int[] a, int lengthA, int[] b, int lengthB) {
+		int i = 0;
+		int j = 0;
+		int common = 0;
+		while (i < lengthA && j < lengthB) {
+			if (a[i] < b[j])
+				i++;
+			else if (a[i] > b[j])
+				j++;
+			else {
+				common++;
+				i++;
+				j++;
+			}
+		}
+		return common;
+	}
+
+	/**
+	 * Invalidate the cached values affected by the addition or removal of the tie between a and b.
+	 * It can be called either before or after the change.
+	 */
+	public void tieChanged(OrgNetwork net, OrgMember a, OrgMember b) {
+		invalidate(a);
+		invalidate(b);
+		for (OrgMember q : net.getAdjacent(a))
+			invalidate(q);
+	}
+
+	protected void invalidate(OrgMember v) {
+		int id = v.getID();
+		if (id < stamp.length)
+			stamp[id] = 0;
+	}
+
+	/**
+	 * Make the cache read-only (or writable again). @see #readOnly
+	 */
+	public void setReadOnly(boolean value) {
+		readOnly = value;
+	}
+
+	/**
+	 * Invalidate every cached value.
+	 */
+	public void invalidateAll() {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+	}
+}
@@ -2,19 +2,16 @@ package orgKTNet;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import repast.simphony.context.Context;
-import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.environment.RunState;
-import repast.simphony.parameter.Parameters;
-import repast.simphony.random.RandomHelper;
 import repast.simphony.context.space.graph.ContextJungNetwork;
 import repast.simphony.space.graph.Network;
-import repast.simphony.space.graph.RepastEdge;
 import sun.security.provider.SystemSigner;
 
 /**
@@ -64,7 +61,11 @@ public class Environment {
 	 * 	The value string will become part of the classifier that corresponds to a certain pair of knowledge source and recipient.
 	 * 	The key and the value cannot be exchanged since agent ID is unique but network position is not.
 	 */
-	protected HashMap<String, String> sourceList = null;
+	protected HashMap<Integer, String> sourceList = null;
+	/**
+	 * The random stream of the environment, split from the focal agent's stream. @see RandomStream
+	 */
+	protected RandomStream rng = null;
 
 	/**
 	 * Construct an agent's task environment.
@@ -75,8 +76,7 @@ public class Environment {
 	 * 		The organizational social network, which will affect and be shaped by the agent's knowledge transfer actions.
 	 */
 	public Environment(OrgMember member, ExpertIndex ei, double[] atc) {
-		Parameters params = RunEnvironment.getInstance().getParameters();
-		int taskRange = (Integer) params.getValue("taskRange");
+		int taskRange = member.config.taskRange;
 		currentTask = new int[taskRange];
 		for(int i = 0; i < currentTask.length; i++)
 			currentTask[i] = 0;
@@ -86,14 +86,21 @@ public class Environment {
 		index = ei;
 		//orgCS = xs;
 		avgTimeCost = atc;
-		sourceList = new HashMap<String, String>();
+		sourceList = new HashMap<Integer, String>();
+		rng = member.rng.split(1);
 	}
 
 	/**
 	 * Add the focal agent to the organizational expert index.
 	 */
 	public void addToExpertIndex() {
-		index.addExpert(focalMember);	
+		//record the levels now, since the agent's knowledge may decay before a deferred update is applied
+		final LinkedHashMap<Integer, Double> levels = focalMember.getExpertiseLevels();
+		focalMember.defer(new Runnable() {
+			public void run() {
+				index.addExpert(focalMember.getID(), levels);
+			}
+		});
 	}
 
 	/**
@@ -110,25 +117,31 @@ public class Environment {
 	public boolean addToSourceList(ContextJungNetwork<OrgMember> net, OrgMember om, int preference){
 		if(focalMember.getID() == om.getID()
 				|| sourceList.containsKey(om.getID())) return false;
-		String partialCl = null;
 		//int relationType = getRelation(omID);
-		double localConst = NetworkAnalysis.localConstraint(net, focalMember, om);
+		return addToSourceList(om, preference, NetworkAnalysis.localConstraint(net, focalMember, om));
+	}
+
+	/**
+	 * Same as {@link #addToSourceList(ContextJungNetwork, OrgMember, int)}, except that the local constraint on the focal agent from the tested agent is known.
+	 * @param localConst
+	 * 		the local constraint on the focal agent from the tested agent
+	 */
+	protected boolean addToSourceList(OrgMember om, int preference, double localConst){
+		if(focalMember.getID() == om.getID()
+				|| sourceList.containsKey(om.getID())) return false;
+		String partialCl = null;
 		if((localConst >= 0.7 && preference == 0)|| (localConst <= 0.3 && preference == 1)) {
 			if(Constants.switch_DKS == 2)
 				//partialCl is a string variable with a length of 3(non-focal member's position)
 				//+ 1 (the first bit of the action part; social capital preference) = 5 bits 
 				partialCl = getPosition(om.getID(), false) + Integer.toString(preference);
-	    	String agentA = focalMember.getID();
-	    	String agentB = om.getID();
-			int row = (Integer.parseInt(agentA) <= Integer.parseInt(agentB))? (Integer.parseInt(agentA) - 1):(Integer.parseInt(agentB) - 1);
-			int col = (Integer.parseInt(agentA) <= Integer.parseInt(agentB))? (Integer.parseInt(agentB) - 1):(Integer.parseInt(agentA) - 1);
 			//Since the effect of tie strength > Constants.tieDecayMin has been considered into network constraint,
 			//next we only consider those ties whose strength <= the min value. These ties have been removed from the network
 			//As long as the historical strength >= 0, the reconnection probability = 1
 			double reconnectProb = 1.;
-			double oldWeight = NetworkAnalysis.tieHistory[row][col];
+			double oldWeight = NetworkAnalysis.getTieHistoryStrength(focalMember.getID(), om.getID());
 			if(oldWeight < 0) reconnectProb = 1.0/(1 + Math.exp(-0.1*oldWeight));
-			if(Constants.drand() <= reconnectProb){
+			if(rng.nextDouble() <= reconnectProb){
 				sourceList.put(om.getID(), partialCl);
 				return true;
 			}
@@ -145,7 +158,7 @@ public class Environment {
 	 * @return
 	 * 		whether the agent has been successfully added into the source list
 	 */
-	public boolean addToSourceList(String omID){
+	public boolean addToSourceList(int omID){
 		if(focalMember.getID() == omID
 				|| sourceList.containsKey(omID)) return false;
 		sourceList.put(omID, null);
@@ -187,7 +200,7 @@ public class Environment {
 	 */
 	public HashMap<Integer, Double> checkGaps (){
 		HashMap<Integer, Double> gaps = new HashMap<Integer, Double> ();
-		int requiredLevel = (Integer) RunEnvironment.getInstance().getParameters().getValue("maxKnowLevel");
+		int requiredLevel = focalMember.config.maxKnowLevel;
 		for(int area : currentTask){
 			double currentLevel = focalMember.getExpertise(area);
 			if(currentLevel < requiredLevel)
@@ -208,43 +221,39 @@ public class Environment {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
 		if(scPreference == -1){
-			Parameters params = RunEnvironment.getInstance().getParameters();
-			int orgSize = (Integer) params.getValue("orgSize");
-			ArrayList<OrgMember> allMembers = new ArrayList<OrgMember>();
-			for(Object om : context.getObjects(OrgMember.class))
-				allMembers.add((OrgMember)om);
+			int orgSize = focalMember.config.orgSize;
 			while(sourceList.size() < Constants.numOfRandSrc){
-				int randPos = RandomHelper.getUniform().nextIntFromTo(0, orgSize - 1);
-				addToSourceList(allMembers.get(randPos).getID());
+				//member IDs start from 1
+				int randID = rng.nextIntFromTo(1, orgSize);
+				addToSourceList(randID);
 			}
 			return sourceList.size();
 		}
 		if(scPreference == -2){
 			for(Integer area: checkGaps().keySet()){
-				ArrayList<String> areaExperts = index.searchExpert(area.intValue());
+				ArrayList<Integer> areaExperts = index.searchExpert(area.intValue());
 				if(areaExperts != null)
-					for(String areaExpert: areaExperts)
+					for(Integer areaExpert: areaExperts)
 						addToSourceList(areaExpert);
 			}
 			return sourceList.size();
 		}	
 		if (scPreference == 0){
-			for (OrgMember om: net.getAdjacent(focalMember)){
+			OrgNetwork view = NetworkAnalysis.view(net);
+			for (OrgMember om: view.getAdjacent(focalMember)){
 				addToSourceList(net, om, 0);
 				if(ndPreference == 1){
-					for(OrgMember omNeighbor: net.getAdjacent(om))
+					for(OrgMember omNeighbor: view.getAdjacent(om))
 						addToSourceList(net, omNeighbor, 0);
 				}
 			}
 			return sourceList.size();
 		}
 		if (scPreference == 1){
-			if(ndPreference == 1){
-				for(Object om : context.getObjects(OrgMember.class))
-					addToSourceList(net, (OrgMember)om, 1);
-			}
+			if(ndPreference == 1)
+				collectBridgingSource(context, net);
 			else{
-				for (OrgMember om: net.getAdjacent(focalMember))
+				for (OrgMember om: NetworkAnalysis.view(net).getAdjacent(focalMember))
 					addToSourceList(net, om, 1);
 			}
 			return sourceList.size();
@@ -252,6 +261,55 @@ public class Environment {
 		return -1;
 	}
 
+	/**
+	 * Collect potential bridging sources from the whole organization.
+	 * The local constraint on the focal agent from another agent j (@see NetworkAnalysis#localConstraint(ContextJungNetwork, OrgMember, OrgMember))
+	 * is positive only if j is a neighbor of the focal agent or shares a neighbor with it. For every agent farther away, the local constraint is 0,
+	 * so it is a bridging source without computing anything.
+	 * Thus only the agents within two steps of the focal agent are tested by their local constraint. Farther agents are either
+	 * (a) all considered, in the order of the context, which gives the same source list as testing every agent (Constants.bridgeSampleSize = 0), or
+	 * (b) sampled at random up to a number (Constants.bridgeSampleSize > 0), so that the search does not grow with the size of the organization.
+	 */
+	protected void collectBridgingSource(Context<Object> context, ContextJungNetwork<OrgMember> net) {
+		HashSet<Integer> nearby = new HashSet<Integer>();
+		nearby.add(focalMember.getID());
+		OrgNetwork view = NetworkAnalysis.view(net);
+		for (OrgMember neighbor : view.getAdjacent(focalMember)) {
+			nearby.add(neighbor.getID());
+			for (OrgMember omNeighbor : view.getAdjacent(neighbor))
+				nearby.add(omNeighbor.getID());
+		}
+		int numOfFar = MemberRegistry.size() - nearby.size();
+		if (Constants.bridgeSampleSize <= 0 || numOfFar <= Constants.bridgeSampleSize) {
+			for (Object member : context.getObjects(OrgMember.class)) {
+				OrgMember om = (OrgMember) member;
+				if (nearby.contains(om.getID()))
+					addToSourceList(net, om, 1);
+				else
+					addToSourceList(om, 1, 0.);
+			}
+			return;
+		}
+		for (Integer id : nearby) {
+			OrgMember om = MemberRegistry.get(id);
+			if (om != null)
+				addToSourceList(net, om, 1);
+		}
+		//there are more far agents than the sample, so drawing IDs until the sample is full ends soon
+		int orgSize = focalMember.config.orgSize;
+		int sampleSize = Math.min(Constants.bridgeSampleSize, orgSize - nearby.size());
+		HashSet<Integer> sampled = new HashSet<Integer>();
+		while (sampled.size() < sampleSize) {
+			//member IDs start from 1
+			int randID = rng.nextIntFromTo(1, orgSize);
+			if (nearby.contains(randID) || !sampled.add(randID))
+				continue;
+			OrgMember om = MemberRegistry.get(randID);
+			if (om != null)
+				addToSourceList(om, 1, 0.);
+		}
+	}
+
 	/*public HashMap<String, String> collectSource(int preference) {
 	Iterable<Object> members = net.getNodes();
 	HashMap<String, String> sourceList = new HashMap<String, String>();
@@ -294,16 +352,20 @@ public class Environment {
 	public double getAvgTieStrength(OrgMember om) {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		int sumStrength = 0;
-		for (RepastEdge<OrgMember> tie : net.getEdges(om))
-			sumStrength += tie.getWeight();
-		return (double) sumStrength / (double) net.getDegree(om);
+		return getAvgTieStrength(NetworkAnalysis.view(net), om);
+	}
+
+	/**
+	 * @see #getAvgTieStrength(OrgMember)
+	 */
+	public static double getAvgTieStrength(OrgNetwork net, OrgMember om) {
+		return net.getStrengthSum(om) / (double) net.getDegree(om);
 	}
 	
 
 
 	/**
-	 * Calculate the density of the agent's ego social network.
+	 * Calculate the density of the agent's ego social network. The value is cached until a tie in the ego network changes. @see EgoDensityCache
 	 * @param om
 	 * 		the focal agent
 	 * @return
@@ -312,28 +374,7 @@ public class Environment {
 	public double getEgoNetworkDensity(OrgMember om) {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		int numOfNodes = net.getDegree(om) + 1;
-		// "+1" refers to the ego.
-		if (numOfNodes < 2)
-			return 0.0;
-		else {
-			int numOfEdges = 0;
-			ArrayList<OrgMember> nodes = new ArrayList<OrgMember>();
-			for (Object neighbor : net.getAdjacent(om))
-				nodes.add((OrgMember) neighbor);
-			// add the ego
-			nodes.add(om); 
-			for (int i = 0; i < numOfNodes; i++) {
-				OrgMember nodeA = nodes.get(i);
-				for (int j = i + 1; j < numOfNodes; j++) {
-					OrgMember nodeB = nodes.get(j);
-					if (net.isAdjacent(nodeA, nodeB))
-						numOfEdges++;
-				}
-			}
-			int maxNumOfEdges = numOfNodes * (numOfNodes - 1) / 2;
-			return (double) numOfEdges / (double) maxNumOfEdges;
-		}
+		return NetworkAnalysis.egoDensityCache.density(NetworkAnalysis.view(net), om);
 	}
 
 	/**
@@ -358,48 +399,26 @@ public class Environment {
 	 * @return
 	 * 		the string indicative of the agent's network position 
 	 */
-	public String getPosition(String omID, boolean isFocalMember) {
+	public String getPosition(int omID, boolean isFocalMember) {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		Parameters params = RunEnvironment.getInstance().getParameters();
-		double avgDC = (Double) params.getValue("avgDegreeCentrality");
-		double globalDensity = (Double) params.getValue("networkDensity");
-		double avgTieStrength = (Double) params.getValue("avgTieStrength");
+		SimulationState state = SimulationState.current;
 		
 		//casting into integer will round the value down (e.g., 7/2 = 3)
 		char[] p = new char[7/2];
 		
-		OrgMember om = null;
-		if(isFocalMember)
-			om = focalMember;
-		else{
-			for(OrgMember member : net.getNodes())
-				if(member.getID() == omID){
-					om = member;
-					break;
-				}
-		}
-		int omDC = net.getDegree(om);
-		double omEgoDensity = getEgoNetworkDensity(om);
-		double omAvgTieStrength = getAvgTieStrength(om);
-
-		if (omDC > avgDC)
-			p[0] = '1';
-		else
-			p[0] = '0';
+		OrgMember om = isFocalMember? focalMember : MemberRegistry.get(omID);
+		//the true position is looked up in the table of the current tick if there is one
+		PositionTable table = state.getPositionTable();
+		byte code = (table != null && table.contains(om.getID()))? table.getCode(om.getID())
+				: PositionTable.getPositionCode(NetworkAnalysis.view(net), om, state);
 
-		if (omAvgTieStrength > avgTieStrength)
-			p[1] = '1';
-		else
-			p[1] = '0';
-
-		if (omEgoDensity > globalDensity)
-			p[2] = '1';
-		else
-			p[2] = '0';
+		p[0] = ((code & PositionTable.DEGREE) != 0)? '1' : '0';
+		p[1] = ((code & PositionTable.STRENGTH) != 0)? '1' : '0';
+		p[2] = ((code & PositionTable.DENSITY) != 0)? '1' : '0';
 		
 		for(int k = 0; k < p.length; k++)
-			if(Constants.switch_EST && RandomHelper.nextDoubleFromTo(0, 1) <= Constants.estErrProb){
+			if(Constants.switch_EST && rng.nextDouble() <= Constants.estErrProb){
 				if(p[k] == '1') p[k] = '0';
 				else p[k] = '1';
 			}
@@ -428,42 +447,33 @@ public class Environment {
 	 * 		2 - weakly connected, 3 - unconnected and sharing few common contacts;
 	 * 		return -1 if the other agent is identical to the focal agent.
 	 */
-	public int getRelation(String secondID) {
+	public int getRelation(int secondID) {
 		int returnValue = -1;
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		OrgMember secondMember = null;
-		for(Object om : context.getObjects(OrgMember.class))
-			if(((OrgMember)om).getID() == secondID){
-				secondMember = (OrgMember) om;
-				break;
-			}
+		OrgMember secondMember = MemberRegistry.get(secondID);
 		if(secondMember == null)
 			System.out.println("empty second member");
-		if (net.isAdjacent(focalMember, secondMember)) {
-			double tieStrength = net.getEdge(focalMember, secondMember).getWeight();
-			Parameters params = RunEnvironment.getInstance().getParameters();
-			double avgTieStrength = (Double) params.getValue("avgTieStrength");
+		OrgNetwork view = NetworkAnalysis.view(net);
+		if (view.isAdjacent(focalMember, secondMember)) {
+			double tieStrength = view.getWeight(focalMember, secondMember);
+			double avgTieStrength = SimulationState.current.getAvgTieStrength();
 			if (tieStrength > avgTieStrength)
 				returnValue = 0;
 			else
 				returnValue = 2;
 		}
 		else {
-			ArrayList<OrgMember> mNeighbors = new ArrayList<OrgMember>();
-			ArrayList<OrgMember> oNeighbors = new ArrayList<OrgMember>();
-			for (OrgMember mNeighbor : net.getAdjacent(focalMember))
-				mNeighbors.add(mNeighbor);
-			for (OrgMember oNeighbor : net.getAdjacent(secondMember))
-				oNeighbors.add(oNeighbor);
-			mNeighbors.retainAll(oNeighbors);
-			double ratio = (double) mNeighbors.size() / (double) net.getDegree(focalMember);
+			//count the common contacts by merging the sorted neighbor lists of the two agents
+			int common = EgoDensityCache.countCommon(view.getNeighborIDs(focalMember), view.getDegree(focalMember),
+					view.getNeighborIDs(secondMember), view.getDegree(secondMember));
+			double ratio = (double) common / (double) view.getDegree(focalMember);
 			if (ratio >= Constants.commonContactThresh)
 				returnValue = 1;
 			else
 				returnValue = 3;
 		}
-		if(Constants.switch_EST && RandomHelper.nextDoubleFromTo(0, 1) <= Constants.estErrProb)
+		if(Constants.switch_EST && rng.nextDouble() <= Constants.estErrProb)
 			switch(returnValue){
 				case 0:
 					returnValue = 2;
@@ -492,8 +502,9 @@ public class Environment {
 		//if(avgStrength == 0)
 			//return null;
 		ArrayList<OrgMember> closeContacts = new ArrayList<OrgMember>();
-		for (OrgMember contact : net.getAdjacent(focalMember)) {
-			double cStrength = net.getEdge(focalMember, contact).getWeight();
+		OrgNetwork view = NetworkAnalysis.view(net);
+		for (OrgMember contact : view.getAdjacent(focalMember)) {
+			double cStrength = view.getWeight(focalMember, contact);
 			if (cStrength > avgStrength)
 				closeContacts.add(contact);
 		}
@@ -503,7 +514,7 @@ public class Environment {
 	/**
 	 * @return the current list of potential knowledge sources.
 	 */
-	public HashMap<String, String> getSourceList(){
+	public HashMap<Integer, String> getSourceList(){
 		return sourceList;
 	}
 
@@ -519,37 +530,30 @@ public class Environment {
 	 * @param id
 	 * 		the other agent's ID
 	 */
-	public void modifyTie(XClassifier cl, String id, double payoff) {
+	public void modifyTie(XClassifier cl, int id, double payoff) {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
 		//double avgDC = (Double) RunEnvironment.getInstance().getParameters().getValue("avgDegreeCentrality"); 
-		OrgMember om = null;
-		Iterable<OrgMember> members = RunState.getInstance().getMasterContext().getObjects(OrgMember.class);
-		for(OrgMember member: members)
-			if(member.getID().equals(id)){
-				om = member;
-				break;
-			}
-		if(net.isAdjacent(focalMember, om) && payoff > 0) {
-			RepastEdge<OrgMember> tie = net.getEdge(focalMember, om);
+		OrgMember om = MemberRegistry.get(id);
+		OrgNetwork view = NetworkAnalysis.view(net);
+		if(view.isAdjacent(focalMember, om) && payoff > 0) {
 			//double oldWeight = tie.getWeight();
-			tie.setWeight(tie.getWeight() + Constants.tieIncrease);
+			NetworkAnalysis.setTieWeight(net, focalMember, om, view.getWeight(focalMember, om) + Constants.tieIncrease);
 			//double newWeight = tie.getWeight();
 			//if(newWeight - oldWeight > 1){
 			//System.out.println("Environment.java L538. CurrentWeight = " + tie.getWeight() + "\n");
 			//}
-			NetworkAnalysis.updateTieStrength(Integer.parseInt(focalMember.getID()), Integer.parseInt(om.getID()), Constants.tieIncrease, false);
+			NetworkAnalysis.updateTieStrength(focalMember.getID(), om.getID(), Constants.tieIncrease, false);
 		}
-		else if (net.isAdjacent(focalMember, om) && payoff <= 0) {
-			RepastEdge<OrgMember> tie = net.getEdge(focalMember, om);
-			double newWeight = tie.getWeight() - Constants.negOverPos*Constants.tieIncrease;
+		else if (view.isAdjacent(focalMember, om) && payoff <= 0) {
+			double newWeight = view.getWeight(focalMember, om) - Constants.negOverPos*Constants.tieIncrease;
 			if(newWeight <= Constants.tieDecayMin)
-				net.removeEdge(tie);
-			else tie.setWeight(newWeight);
+				NetworkAnalysis.removeTie(net, focalMember, om);
+			else NetworkAnalysis.setTieWeight(net, focalMember, om, newWeight);
 			//System.out.println("Environment.java L538. CurrentWeight = " + tie.getWeight() + "\n");
-			NetworkAnalysis.updateTieStrength(Integer.parseInt(focalMember.getID()), Integer.parseInt(om.getID()), -1*Constants.tieIncrease*Constants.negOverPos, false);
+			NetworkAnalysis.updateTieStrength(focalMember.getID(), om.getID(), -1*Constants.tieIncrease*Constants.negOverPos, false);
 		}
-		else if(!net.isAdjacent(focalMember, om) && payoff > 0){
+		else if(!view.isAdjacent(focalMember, om) && payoff > 0){
 			/*if(Constants.switch_DKS == 2){
 				//String action = Integer.toBinaryString(cl.getAction());
 				//char signalBit = action.charAt(action.length() - 1);
@@ -569,14 +573,14 @@ public class Environment {
 			}*/   	
 			//if the historical tie strength is negative, the reactivated tie's initial strength is at least half of a new tie (0.5)
 			//if the historical tie strength is positive, it will be added to the initial strength, represent that fewer construction efforts are needed.
-			//Since this statement locates at a else branch that the tie does not exist, NetworkAnalysis.tieHistory[row][col] should be not more than Constants.tieDecayMin
-			double newRecord = NetworkAnalysis.updateTieStrength(Integer.parseInt(focalMember.getID()), Integer.parseInt(om.getID()), Constants.tieIncrease, false);
+			//Since this statement locates at a else branch that the tie does not exist, the historical tie strength should be not more than Constants.tieDecayMin
+			double newRecord = NetworkAnalysis.updateTieStrength(focalMember.getID(), om.getID(), Constants.tieIncrease, false);
 			//System.out.println("EnvironmentL569: the new history strength is" + newRecord +"\n");
-			net.addEdge(focalMember, om, Constants.tieIncrease + Math.max(-0.5, newRecord - Constants.tieIncrease));
+			NetworkAnalysis.addTie(net, focalMember, om, Constants.tieIncrease + Math.max(-0.5, newRecord - Constants.tieIncrease));
 			//System.out.println("EnvironmentL574: the initial strength is" + (Constants.tieIncrease + Math.max(-0.5, newRecord - Constants.tieIncrease)) +"\n");
 		}
 		else
-			NetworkAnalysis.updateTieStrength(Integer.parseInt(focalMember.getID()), Integer.parseInt(om.getID()), -1*Constants.tieIncrease*Constants.negOverPos, false);
+			NetworkAnalysis.updateTieStrength(focalMember.getID(), om.getID(), -1*Constants.tieIncrease*Constants.negOverPos, false);
 	}
 	/**
 	 * Add the time this agent spent in its task to the sum of agents' time cost.
@@ -584,16 +588,20 @@ public class Environment {
 	 * If this is the case, reduce the number of active learners by 1.
 	 */
 	public void reportTimeCost() {
-		if(timeCost == 0){ //no need to learn or self-learn at the first step
-			int activeLearner = (Integer) RunEnvironment.getInstance().getParameters().getValue("activeLearner");
-			activeLearner--;
-			RunEnvironment.getInstance().getParameters().setValue("activeLearner", activeLearner);
-			return;
-		}
-		int currentProblem = (Integer) RunEnvironment.getInstance().getParameters().getValue("currentProblem");
-		avgTimeCost[currentProblem - 1] += timeCost;
-		if(avgTimeCost[currentProblem-1] <= 0)
-			System.out.println("EnvironmentL503");
+		final int myTimeCost = timeCost;
+		//the counters are shared by all agents, so the report is deferred during parallel stepping
+		focalMember.defer(new Runnable() {
+			public void run() {
+				if(myTimeCost == 0){ //no need to learn or self-learn at the first step
+					SimulationState.current.learnerInactive();
+					return;
+				}
+				int currentProblem = SimulationState.current.getCurrentProblem();
+				avgTimeCost[currentProblem - 1] += myTimeCost;
+				if(avgTimeCost[currentProblem-1] <= 0)
+					System.out.println("EnvironmentL503");
+			}
+		});
 	}
 	/**
 	 * Reset some fields of the task environment to prepare for a new task assignment.
@@ -618,30 +626,18 @@ public class Environment {
 		}
 	}
 
-	public double getReplyProb(String requesterID) {
+	public double getReplyProb(int requesterID) {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		ContextJungNetwork<OrgMember> replicNet = net;
-		OrgMember secondParty = null;
-		Iterable<OrgMember> members = RunState.getInstance().getMasterContext().getObjects(OrgMember.class);
-		for(OrgMember member: members)
-			if(member.getID() == requesterID){
-				secondParty = member;
-				break;
-			}
+		OrgMember secondParty = MemberRegistry.get(requesterID);
 		//The tie weight used here is not the actual value: we can only know that after the reply actually happens.
 		//So the tie weight used here (initial or added value) is an assumed value.
-		if(net.isAdjacent(focalMember, secondParty)){
-			double oldWeight = replicNet.getEdge(focalMember, secondParty).getWeight();
-			replicNet.getEdge(focalMember, secondParty).setWeight(oldWeight+1.0);
-		}
-		else
-			replicNet.addEdge(focalMember, secondParty, 1.0);
-		double utilityOfReply = NetworkAnalysis.constraint(replicNet, focalMember);
+		//The assumed tie is only evaluated, never added to the network.
+		double utilityOfReply = NetworkAnalysis.constraint(net, focalMember, secondParty, 1.0);
 		double utilityOfPostpone = NetworkAnalysis.constraint(net, focalMember);
 		int preferenceConstant = -1;
 		if(focalMember.getSCPreference() < 0){//the value of preference can be 0, 1, -1, or -2, so < 0 means either -1 or -2
-			preferenceConstant = (Constants.drand() < 0.5)? 1:(-1);
+			preferenceConstant = (rng.nextDouble() < 0.5)? 1:(-1);
 		}
 		else{
 			//bonding preference = 0; bridging preference = 1
@@ -657,30 +653,26 @@ public class Environment {
 	public void clearLocalNet() {
 		Context<Object> context = RunState.getInstance().getMasterContext();
 		ContextJungNetwork<OrgMember> net = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-		ArrayList<RepastEdge<OrgMember>> tieCollection = new ArrayList<RepastEdge<OrgMember>>();
-		int row = 0;
-		int col = 0;
-		String agentA = null;
-		String agentB = null;
+		OrgNetwork view = NetworkAnalysis.view(net);
+		ArrayList<OrgMember> tieCollection = new ArrayList<OrgMember>();
+		int agentA = focalMember.getID();
+		int agentB = 0;
 		double oldWeight = 0.;
 		double newWeight = 0.;
-		for(RepastEdge<OrgMember> localTie : net.getEdges(focalMember)){
-			agentA = localTie.getSource().getID();
-			agentB = localTie.getTarget().getID();
-			row = (Integer.parseInt(agentA) <= Integer.parseInt(agentB))? (Integer.parseInt(agentA) - 1):(Integer.parseInt(agentB) - 1);
-			col = (Integer.parseInt(agentA) <= Integer.parseInt(agentB))? (Integer.parseInt(agentB) - 1):(Integer.parseInt(agentA) - 1);
-			oldWeight = localTie.getWeight();
-			//newWeight = oldWeight - Constants.negOverPos*NetworkAnalysis.tieUsePerProblem[row][col];
-			if(NetworkAnalysis.tieUsePerProblem[row][col] > 0){
+		for(OrgMember contact : view.getAdjacent(focalMember)){
+			agentB = contact.getID();
+			oldWeight = view.getWeight(focalMember, contact);
+			//newWeight = oldWeight - Constants.negOverPos*NetworkAnalysis.tieHistory.getUse(a, b);
+			if(NetworkAnalysis.tieHistory.getUse(agentA, agentB) > 0){
 				newWeight = oldWeight - Constants.negOverPos;
-				NetworkAnalysis.updateTieStrength(Integer.parseInt(agentA), Integer.parseInt(agentB), newWeight - oldWeight, false);
-				NetworkAnalysis.tieUsePerProblem[row][col] = 0; //this is necessary, since when update historical tie strength, it gets deleted only once
+				NetworkAnalysis.updateTieStrength(agentA, agentB, newWeight - oldWeight, false);
+				NetworkAnalysis.tieHistory.setUse(agentA, agentB, 0); //this is necessary, since when update historical tie strength, it gets deleted only once
 				if(newWeight <= Constants.tieDecayMin)
-					tieCollection.add(localTie);
-				else localTie.setWeight(newWeight);
+					tieCollection.add(contact);
+				else NetworkAnalysis.setTieWeight(net, focalMember, contact, newWeight);
 			}
 		}
-		for(RepastEdge<OrgMember> tie: tieCollection)
-			net.removeEdge(tie);
+		for(OrgMember contact: tieCollection)
+			NetworkAnalysis.removeTie(net, focalMember, contact);
 	}
 }
\ No newline at end of file
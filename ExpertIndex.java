@@ -16,7 +16,7 @@ import repast.simphony.context.Context;
  * @author linly
  * @version OrgKTNet 1.0
  */
-public class ExpertIndex extends TreeMap<Integer, BoundedSortedMap<Double, String>> {
+public class ExpertIndex extends TreeMap<Integer, BoundedSortedMap<Double, Integer>> {
 
 	protected static final long serialVersionUID = 1L;
 
@@ -33,16 +33,28 @@ public class ExpertIndex extends TreeMap<Integer, BoundedSortedMap<Double, Strin
 	 * 		the agent to be added
 	 */
 	public void addExpert(OrgMember expert) {
-		BoundedSortedMap<Double, String> areaIndex = null;
-		for (Map.Entry<Integer, SpecialtyArea> me : expert.myExpertise.entrySet()) {
+		addExpert(expert.getID(), expert.getExpertiseLevels());
+	}
+
+	/**
+	 * Add an agent to the expert index given the levels of its knowledge, which may have been recorded earlier
+	 * (e.g., when the agent finished its task in the compute phase of parallel stepping). @see ParallelStepper
+	 * @param expertID
+	 * 		the ID of the agent to be added
+	 * @param levels
+	 * 		the agent's level of knowledge in each specialty area
+	 */
+	public void addExpert(int expertID, Map<Integer, Double> levels) {
+		BoundedSortedMap<Double, Integer> areaIndex = null;
+		for (Map.Entry<Integer, Double> me : levels.entrySet()) {
 			int area = me.getKey();
-			double knowledgeLevel = me.getValue().currentLevel;
+			double knowledgeLevel = me.getValue();
 			areaIndex = this.get(area);
 			if (areaIndex == null) {
-				areaIndex = new BoundedSortedMap<Double, String>(Constants.numOfExperts);
+				areaIndex = new BoundedSortedMap<Double, Integer>(Constants.numOfExperts);
 				this.put(area, areaIndex);
 			}
-			areaIndex.put(knowledgeLevel, expert.getID());
+			areaIndex.put(knowledgeLevel, expertID);
 		}
 	}
 
@@ -66,11 +78,11 @@ public class ExpertIndex extends TreeMap<Integer, BoundedSortedMap<Double, Strin
 	 * @return
 	 * 		a list of the experts' IDs
 	 */
-	public ArrayList<String> searchExpert(int area) {
-		BoundedSortedMap<Double, String> areaIndex = this.get(area);
+	public ArrayList<Integer> searchExpert(int area) {
+		BoundedSortedMap<Double, Integer> areaIndex = this.get(area);
 		if(areaIndex == null) return null;
-		ArrayList<String> sources = new ArrayList<String> ();
-		for (Map.Entry<Double, String> entry : areaIndex.entrySet())
+		ArrayList<Integer> sources = new ArrayList<Integer> ();
+		for (Map.Entry<Double, Integer> entry : areaIndex.entrySet())
 			sources.add(entry.getValue());
 		return sources;
 	}
@@ -0,0 +1,108 @@
+package orgKTNet;
+
+import repast.simphony.context.Context;
+import repast.simphony.context.ContextEvent;
+import repast.simphony.context.ContextListener;
+
+/**
+ * This class keeps a dense registry of all organizational members indexed by their IDs.
+ * Agents often need to find another agent by its ID (e.g., the receiver of a message or the source of a reply).
+ * Scanning the context for every such lookup makes each message cost O(N), so a step of the whole organization costs O(N^2).
+ * The registry is an array whose index is the member ID (IDs start from 1, so slot 0 is never used), which makes every lookup O(1).
+ * It is built once when the context is constructed (@see OrgBuilder#build(Context)) and listens to the context afterwards,
+ * so that agents added to or removed from the context are also added to or removed from the registry.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class MemberRegistry implements ContextListener<Object> {
+
+	/**
+	 * The registered agents; members[i] is the agent whose ID is i.
+	 */
+	protected static OrgMember[] members = new OrgMember[1];
+	/**
+	 * The number of registered agents
+	 */
+	protected static int size = 0;
+
+	/**
+	 * Build the registry out of all agents in the context and keep it in sync with the context afterwards.
+	 * @param context
+	 * 		the context that contains all agents
+	 */
+	public MemberRegistry(Context<Object> context) {
+		clear();
+		for (Object om : context.getObjects(OrgMember.class))
+			register((OrgMember) om);
+		context.addContextListener(this);
+	}
+
+	/**
+	 * Remove all agents from the registry (e.g., when a new run starts in the same JVM).
+	 */
+	public static void clear() {
+		members = new OrgMember[1];
+		size = 0;
+	}
+
+	/**
+	 * Add an agent to the registry. The registry grows if the agent's ID exceeds its current capacity.
+	 * @param om
+	 * 		the agent to be added
+	 */
+	public static void register(OrgMember om) {
+		int id = om.getID();
+		if (id >= members.length) {
+			OrgMember[] grown = new OrgMember[Math.max(id + 1, members.length * 2)];
+			System.arraycopy(members, 0, grown, 0, members.length);
+			members = grown;
+		}
+		if (members[id] == null)
+			size++;
+		members[id] = om;
+	}
+
+	/**
+	 * Remove an agent from the registry.
+	 * @param om
+	 * 		the agent to be removed
+	 */
+	public static void unregister(OrgMember om) {
+		int id = om.getID();
+		if (id < members.length && members[id] == om) {
+			members[id] = null;
+			size--;
+		}
+	}
+
+	/**
+	 * @param id
+	 * 		the ID of an agent
+	 * @return the agent with the specified ID, or null if no such agent has been registered
+	 */
+	public static OrgMember get(int id) {
+		if (id <= 0 || id >= members.length)
+			return null;
+		return members[id];
+	}
+
+	/**
+	 * @return the number of registered agents
+	 */
+	public static int size() {
+		return size;
+	}
+
+	/**
+	 * Keep the registry in sync with the context when agents are added or removed.
+	 */
+	@Override
+	public void eventOccured(ContextEvent<Object> ev) {
+		if (!(ev.getTarget() instanceof OrgMember))
+			return;
+		if (ev.getType() == ContextEvent.EventType.AGENT_ADDED)
+			register((OrgMember) ev.getTarget());
+		else if (ev.getType() == ContextEvent.EventType.AGENT_REMOVED)
+			unregister((OrgMember) ev.getTarget());
+	}
+}
@@ -8,15 +8,15 @@ import java.util.HashMap;
  * @version OrgKTNet 1.0
  */
 public class Message {
-	protected String receiver;
-	protected String sender;
+	protected int receiver;
+	protected int sender;
 	public boolean isRequest;
 	protected HashMap<Integer, Double> content = null;
 	protected XClassifier baseCl = null;
 	//protected int sendTime = 0;
 	//protected int returnTime = 0;
 
-	public Message(boolean requestOrNot, String receiver, String sender,
+	public Message(boolean requestOrNot, int receiver, int sender,
 			HashMap<Integer, Double> areas, XClassifier cl) {
 		isRequest = requestOrNot;
 		this.receiver = receiver;
@@ -35,7 +35,7 @@ public class Message {
 		return content;
 	}
 
-	public String getFrom() {
+	public int getFrom() {
 		return sender;
 	}
 
@@ -47,7 +47,7 @@ public class Message {
 		return sendTime;
 	}*/
 
-	public String getTo() {
+	public int getTo() {
 		return receiver;
 	}
 	
@@ -7,7 +7,6 @@ import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.environment.RunState;
 
 /**
  * This class handles the communication among agents' via knoweldge request and reply messages.
@@ -75,7 +74,7 @@ public class Messenger {
 
 	/**
 	 * Create a message and then insert the message into the receiver's inbox.
-	 * This method searches among all agents to find the specified receiver.
+	 * The receiver is looked up in the member registry. @see MemberRegistry
 	 * @param isRequest
 	 * 		indicates whether this message is a knowledge request (=true) or not (=false).
 	 * @param receiver
@@ -91,14 +90,16 @@ public class Messenger {
 	 * @param rTime
 	 * 		the time when the reply is sent out; the value of this parameter is zero if the message is a request.
 	 */
-	public void send(boolean isRequest, String receiver, HashMap<Integer, Double> answers, XClassifier cl) {
-		Message msg = new Message(isRequest, receiver, host.getID(), answers, cl);
-		Iterable<OrgMember> members = RunState.getInstance().getMasterContext().getObjects(OrgMember.class);
-		for(OrgMember om: members)
-			if(om.getID() == receiver){
-				om.myMessenger.inbox.offer(msg);
-				break;
-			}
+	public void send(boolean isRequest, int receiver, HashMap<Integer, Double> answers, XClassifier cl) {
+		final Message msg = new Message(isRequest, receiver, host.getID(), answers, cl);
+		final OrgMember om = MemberRegistry.get(receiver);
+		if(om != null)
+			//the receiver's inbox belongs to another agent, so the delivery is deferred during parallel stepping
+			host.defer(new Runnable() {
+				public void run() {
+					om.myMessenger.inbox.offer(msg);
+				}
+			});
 	}
 
 }
\ No newline at end of file
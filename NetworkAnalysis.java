@@ -1,13 +1,10 @@
 package orgKTNet;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
 
-import edu.uci.ics.jung.algorithms.importance.BetweennessCentrality;
 import edu.uci.ics.jung.algorithms.metrics.*;
-import edu.uci.ics.jung.graph.Graph;
 
 import repast.simphony.context.Context;
 import repast.simphony.context.space.graph.ContextJungNetwork;
@@ -26,36 +23,213 @@ import repast.simphony.space.graph.RepastEdge;
 public class NetworkAnalysis extends Metrics {
 	
 	/**
-	 *  a semi-matrix recording the historically accumulated strength of every possible network tie
+	 *  the historically accumulated strength and the times of use (per problem) of every pair of agents that has ever interacted
+	 *  @see TieHistory
 	 */ 
-	public static double[][] tieHistory = null;
+	public static TieHistory tieHistory = null;
 	/**
-	 *  a semi-matrix recording the time of use for every possible network tie
-	 */ 
-	public static int[][] tieUsePerProblem = null;
+	 *  the cached tie-weight sums and constraint measures of all agents
+	 *  @see ConstraintCache
+	 */
+	public static ConstraintCache constraintCache = null;
+	/**
+	 *  the number of ties and the sum of tie strength of the network
+	 *  @see NetworkStats
+	 */
+	public static NetworkStats networkStats = null;
+	/**
+	 *  the number of triangles of every agent, kept up to date if Constants.switch_TRI is true
+	 *  @see TriangleCounter
+	 */
+	public static TriangleCounter triangleCounter = null;
+	/**
+	 *  the cached ego network densities of all agents
+	 *  @see EgoDensityCache
+	 */
+	public static EgoDensityCache egoDensityCache = null;
+	/**
+	 *  the lazy decay of ties, or null if ties decay eagerly
+	 *  @see TieDecay
+	 */
+	public static TieDecay tieDecay = null;
+	/**
+	 *  the view of the network through which the network measures read it
+	 *  @see OrgNetwork
+	 */
+	public static OrgNetwork orgNetwork = null;
+	/**
+	 *  the network in primitive arrays if Constants.switch_PRM is true, which is then the store of the network; otherwise null
+	 *  @see PrimitiveOrgNetwork
+	 */
+	protected static PrimitiveOrgNetwork primitiveNetwork = null;
+	/**
+	 *  whether the ties of the Repast projection follow every change of the network, which they always do unless the network is stored in primitive arrays
+	 *  and not displayed (i.e., in a batch run)
+	 */
+	protected static boolean projectionSynced = true;
 	
 	public NetworkAnalysis(ContextJungNetwork<OrgMember> initialNet){
-		int netSize = initialNet.size();
-		//build a population * (population + 1) matrix
+		DataIO.PajekTies ties = getTies(initialNet);
 		if(tieHistory==null){
-			tieHistory = new double [netSize][netSize];
-			int agentA, agentB, u, v;
-			for(RepastEdge<OrgMember> tie: initialNet.getEdges()){
-				agentA = Integer.parseInt(tie.getSource().getID());
-				agentB = Integer.parseInt(tie.getTarget().getID());
-				u = (agentA < agentB)? (agentA - 1):(agentB - 1);
-				v = (agentA < agentB)? (agentB - 1):(agentA - 1);
-				tieHistory[u][v] = tie.getWeight();
-			}
+			tieHistory = new TieHistory(ties.numOfTies);
+			for(int t = 0; t < ties.numOfTies; t++)
+				tieHistory.setStrength(ties.ends[2*t], ties.ends[2*t + 1], ties.weights[t]);
 		}
-		if(tieUsePerProblem==null){
-			tieUsePerProblem = new int [netSize][netSize];
-			for (int u = 0; u < netSize; u++)
-				for (int v = u; v< netSize; v++){
-					tieUsePerProblem[u][v]= 0;
-				}
+		//cached values belong to the network of the current run
+		constraintCache = new ConstraintCache(initialNet.size());
+		TieDecay.Ties decayingTies = Constants.switch_LTD? decayingTies(initialNet) : null;
+		tieDecay = (decayingTies != null)? TieDecay.create(decayingTies, ties) : null;
+		networkStats = new NetworkStats(ties);
+		egoDensityCache = new EgoDensityCache(initialNet.size());
+		triangleCounter = Constants.switch_TRI? new TriangleCounter(snapshot(initialNet)) : null;
+	}
+	
+	/**
+	 * Set up the store of the network of a new run, right after the Repast projection is built and before any tie is added to it
+	 * (@see OrgBuilder#build(Context)). Everything derived from the network of the previous run is dropped.
+	 * If the network is stored in primitive arrays, the ties the projection already has are copied into them,
+	 * and in a batch run they are removed from the projection, which is then left without ties.
+	 */
+	public static void createStore(ContextJungNetwork<OrgMember> net){
+		tieDecay = null;
+		triangleCounter = null;
+		constraintCache = null;
+		egoDensityCache = null;
+		networkStats = null;
+		primitiveNetwork = Constants.switch_PRM? new PrimitiveOrgNetwork(net) : null;
+		projectionSynced = primitiveNetwork == null || !RunEnvironment.getInstance().isBatch();
+		if(!projectionSynced && net.numEdges() > 0)
+			net.removeEdges();
+		orgNetwork = (primitiveNetwork != null)? primitiveNetwork : new RepastOrgNetwork(net);
+	}
+	
+	/**
+	 * Apply the decays of the historical strength of every connected pair that have not been applied yet (@see TieDecay#settleHistory(int, int)).
+	 * The tie history is kept across runs in the same JVM, so this is done at the end of a run (@see OrgBuilder#closeOutput()), before the decay of the run is dropped;
+	 * otherwise the pairs still connected would start the next run with the historical strength they had when their ties were last set.
+	 */
+	public static void settleHistories(){
+		if(tieDecay == null || orgNetwork == null)
+			return;
+		for(OrgMember v : orgNetwork.getNodes()){
+			int[] row = orgNetwork.getNeighborIDs(v);
+			int degree = orgNetwork.getDegree(v);
+			for(int k = 0; k < degree; k++)
+				if(row[k] > v.getID())//settle each tie once
+					tieDecay.settleHistory(v.getID(), row[k]);
 		}
 	}
+	
+	/**
+	 * @return the view of the network through which the network measures read it
+	 */
+	public static OrgNetwork view(ContextJungNetwork<OrgMember> net){
+		return (orgNetwork != null)? orgNetwork : new RepastOrgNetwork(net);
+	}
+	
+	/**
+	 * @return all ties of the network with their current strength, taken from the store
+	 */
+	public static DataIO.PajekTies getTies(ContextJungNetwork<OrgMember> net){
+		if(primitiveNetwork != null)
+			return primitiveNetwork.getTies();
+		DataIO.PajekTies ties = new DataIO.PajekTies();
+		ties.numVertices = net.size();
+		for(RepastEdge<OrgMember> tie : net.getEdges())
+			ties.add(tie.getSource().getID(), tie.getTarget().getID(), tie.getWeight());
+		return ties;
+	}
+	
+	/**
+	 * @return a snapshot of the network, taken from the store
+	 */
+	public static NetworkSnapshot snapshot(ContextJungNetwork<OrgMember> net){
+		return (primitiveNetwork != null)? new NetworkSnapshot(primitiveNetwork) : new NetworkSnapshot(net);
+	}
+	
+	/**
+	 * @return the ties through which the lazy decay reads and stamps the network, or null if the projection was not built with decaying ties
+	 */
+	protected static TieDecay.Ties decayingTies(ContextJungNetwork<OrgMember> net){
+		if(primitiveNetwork != null)
+			return primitiveNetwork;
+		for(RepastEdge<OrgMember> tie : net.getEdges())
+			if(!(tie instanceof DecayingTie)){
+				System.out.println("The social network was not built with decaying ties; ties decay eagerly.");
+				return null;
+			}
+		return new RepastOrgNetwork(net);
+	}
+	
+	/**
+	 * Add a tie of the initial network, or set its strength if the two agents are already connected.
+	 * Nothing is derived from the network before it is analyzed (@see #NetworkAnalysis(ContextJungNetwork)), so only the store is changed.
+	 */
+	public static void addInitialTie(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double weight){
+		if(view(net).isAdjacent(a, b))
+			setStoredWeight(net, a, b, weight);
+		else
+			addStoredTie(net, a, b, weight);
+	}
+	
+	protected static void addStoredTie(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double weight){
+		if(primitiveNetwork != null) primitiveNetwork.addTie(a, b, weight);
+		if(projectionSynced) net.addEdge(a, b, weight);
+	}
+	
+	protected static void setStoredWeight(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double weight){
+		if(primitiveNetwork != null) primitiveNetwork.setWeight(a, b, weight);
+		if(projectionSynced) net.getEdge(a, b).setWeight(weight);
+	}
+	
+	protected static void removeStoredTie(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b){
+		if(primitiveNetwork != null) primitiveNetwork.removeTie(a, b);
+		if(projectionSynced) net.removeEdge(net.getEdge(a, b));
+	}
+	
+	/**
+	 * The model changes the organizational social network only through the following three methods,
+	 * so that the store of the network and everything derived from it (e.g., the constraint cache and the network aggregates) can follow every change of a tie.
+	 * @param weight
+	 * 		the strength of the new tie
+	 */
+	public static void addTie(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double weight){
+		if(triangleCounter != null) triangleCounter.tieAdded(view(net), a, b);
+		addStoredTie(net, a, b, weight);
+		if(tieDecay != null) tieDecay.schedule(a.getID(), b.getID());
+		if(constraintCache != null) constraintCache.tieChanged(view(net), a, b);
+		if(egoDensityCache != null) egoDensityCache.tieChanged(view(net), a, b);
+		if(networkStats != null) networkStats.tieAdded(weight);
+	}
+	
+	/**
+	 * Change the strength of an existing tie.
+	 * @see #addTie(ContextJungNetwork, OrgMember, OrgMember, double)
+	 */
+	public static void setTieWeight(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double weight){
+		double oldWeight = view(net).getWeight(a, b);
+		//the historical strength has decayed with the old strength until now
+		if(tieDecay != null) tieDecay.settleHistory(a.getID(), b.getID());
+		if(networkStats != null) networkStats.tieReweighted(oldWeight, weight);
+		setStoredWeight(net, a, b, weight);
+		if(tieDecay != null) tieDecay.schedule(a.getID(), b.getID());
+		if(constraintCache != null) constraintCache.tieChanged(view(net), a, b);
+	}
+	
+	/**
+	 * Remove an existing tie.
+	 * @see #addTie(ContextJungNetwork, OrgMember, OrgMember, double)
+	 */
+	public static void removeTie(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b){
+		double oldWeight = view(net).getWeight(a, b);
+		//the historical strength stops decaying with the tie
+		if(tieDecay != null) tieDecay.settleHistory(a.getID(), b.getID());
+		removeStoredTie(net, a, b);
+		if(triangleCounter != null) triangleCounter.tieRemoved(view(net), a, b);
+		if(constraintCache != null) constraintCache.tieChanged(view(net), a, b);
+		if(egoDensityCache != null) egoDensityCache.tieChanged(view(net), a, b);
+		if(networkStats != null) networkStats.tieRemoved(oldWeight);
+	}
 	/**
 	 * Deal with sources whose reply messages the recipient never receives
 	 */
@@ -73,24 +247,27 @@ public class NetworkAnalysis extends Metrics {
 	 * 		the size of the network
 	 */
 	public static double getAvgDC(ContextJungNetwork<OrgMember> orgSocialNetwork) {
+		OrgNetwork net = view(orgSocialNetwork);
 		int sumDegree = 0;
-		int numOfNodes = orgSocialNetwork.size();
-		for (OrgMember node : orgSocialNetwork.getNodes())
-			sumDegree += orgSocialNetwork.getDegree(node);
+		int numOfNodes = net.size();
+		for (OrgMember node : net.getNodes())
+			sumDegree += net.getDegree(node);
 		return (double) sumDegree / (double) numOfNodes;
 	}
 
 	/**
-	 * Calculate the average tie strength of the network
+	 * Calculate the average tie strength of the network.
+	 * The model keeps this value up to date in networkStats, so this walk over all ties is only needed for a network the model does not change.
 	 */
 	public static double getAvgTieStrength(ContextJungNetwork<OrgMember> orgSocialNetwork) {
-		int sumStrength = 0;
-		for (RepastEdge<OrgMember> tie : orgSocialNetwork.getEdges())
-			sumStrength += tie.getWeight();
-		int numOfTies = orgSocialNetwork.numEdges();
+		DataIO.PajekTies ties = getTies(orgSocialNetwork);
+		double sumStrength = 0.;
+		for (int t = 0; t < ties.numOfTies; t++)
+			sumStrength += ties.weights[t];
+		int numOfTies = ties.numOfTies;
 		double avgTS = 0.;
 		if(numOfTies > 0){
-			avgTS = (double) sumStrength / (double) numOfTies;
+			avgTS = sumStrength / (double) numOfTies;
 			if(avgTS < Constants.smallValue) return 0.0;
 			else return avgTS;
 		}
@@ -106,47 +283,32 @@ public class NetworkAnalysis extends Metrics {
 	public static double getNetworkDensity(ContextJungNetwork<OrgMember> orgSocialNetwork) {
 		int netSize = orgSocialNetwork.size();
 		int maxNumOfTies = netSize * (netSize - 1) / 2;
-		return (double) orgSocialNetwork.numEdges() / (double) maxNumOfTies;
+		return (double) view(orgSocialNetwork).numEdges() / (double) maxNumOfTies;
 	}
 	
 	/**
-	 * Calculate the mean value of network nodes' clustering coefficient
+	 * Calculate the mean value of network nodes' clustering coefficient.
+	 * It gives the same values as JUNG's clusteringCoefficients, but counts triangles from a snapshot of the network. @see #getTriangles(NetworkSnapshot)
+	 * If the triangles are counted incrementally (@see TriangleCounter), it takes O(N) instead.
 	 * @param orgSocialNetwork
-	 * @see clusteringCoefficients
 	 */
 	public static double getAvgClusterCoeff(ContextJungNetwork<OrgMember> orgSocialNetwork){
-		Graph<OrgMember, RepastEdge<OrgMember>> g = orgSocialNetwork.getGraph();
-		Map<OrgMember, Double> cc = clusteringCoefficients(g);
-		double avgCC = 0.;
-		for (Map.Entry<OrgMember, Double> single_cc : cc.entrySet())
-			avgCC += single_cc.getValue();
-		avgCC = avgCC/orgSocialNetwork.size();
-		return avgCC;
+		if(triangleCounter != null)
+			return triangleCounter.getAvgClusterCoeff(view(orgSocialNetwork));
+		return getAvgClusterCoeff(snapshot(orgSocialNetwork));
 	}
 
 	/**
 	 * Calculate the network's betweenness centralization based on Equation 5.13
 	 * in Wasserman, S., & Faust, K. (1994). Social network analysis methods and applications. p.191  
-	 * The betweenness centrality of each node is calculated using JUNG
-	 * <a href="http://jung.sourceforge.net/doc/api/edu/uci/ics/jung/algorithms/importance/BetweennessCentrality.html>BetweennessCentrality class</a>
+	 * The betweenness centrality of each node used to be calculated using JUNG
+	 * <a href="http://jung.sourceforge.net/doc/api/edu/uci/ics/jung/algorithms/importance/BetweennessCentrality.html>BetweennessCentrality class</a>;
+	 * now it is calculated from a snapshot of the network, which gives the same values. @see #getBetweenness(NetworkSnapshot)
 	 * @param orgSocialNetwork
 	 * @return
 	 */
 	public static double getBetweenCentralization(ContextJungNetwork<OrgMember> orgSocialNetwork){
-		Graph<OrgMember, RepastEdge<OrgMember>> g = orgSocialNetwork.getGraph();
-        BetweennessCentrality<OrgMember, RepastEdge<OrgMember>> ranker = 
-                new BetweennessCentrality<OrgMember, RepastEdge<OrgMember>>(g);
-        ranker.setRemoveRankScoresOnFinalize(false); 
-        ranker.evaluate();
-        double maxBC = 0.;
-        double sumBC = 0.;
-        for (OrgMember om: orgSocialNetwork.getNodes())
-        	if (ranker.getVertexRankScore(om) > maxBC )
-        		maxBC = ranker.getVertexRankScore(om);
-        for (OrgMember om: orgSocialNetwork.getNodes())
-        	sumBC += maxBC - ranker.getVertexRankScore(om);
-        int netSize = orgSocialNetwork.size();
-        return 2*sumBC/(Math.pow((netSize - 1), 2.)*(netSize - 2));
+		return getBetweenCentralization(snapshot(orgSocialNetwork));
 	}
 	
 	/**
@@ -168,7 +330,7 @@ public class NetworkAnalysis extends Metrics {
 	 * <tr><td>9</td><td>210</td><td></td></tr>
 	 * <tr><td>10</td><td>300</td><td></td></tr>
 	 * </table>
-	 * This function and related sub-functions are modified from the JUNG TriadicCensus class(edu.uci.ics.jung.algorithms.metrics.TriadicCensus),
+	 * The census (@see #getModifiedTriadCensus(NetworkSnapshot, double)) is modified from the JUNG TriadicCensus class(edu.uci.ics.jung.algorithms.metrics.TriadicCensus),
 	 * which is based on <a href="http://vlado.fmf.uni-lj.si/pub/networks/doc/triads/triads.pdf">
 	 * A subquadratic triad census algorithm for large sparse networks with small maximum degree</a>
 	 * Vladimir Batagelj and Andrej Mrvar, University of Ljubljana. Published in Social Networks.
@@ -176,127 +338,402 @@ public class NetworkAnalysis extends Metrics {
 	 * @return the proportion of hybrid triads in all triads
 	 */
 	public static double getHybridTriadProportion(ContextJungNetwork<OrgMember> orgSocialNetwork){
-		double tieStrengthThresh = getAvgTieStrength(orgSocialNetwork);
-		int netSize = orgSocialNetwork.size();
-        int[] modifiedTriadCounts = new int[11];
-		Iterable<OrgMember> nodes = orgSocialNetwork.getNodes();
-		ArrayList<OrgMember> id = new ArrayList<OrgMember>();
-		for (OrgMember node : nodes)
-			id.add(node);
-		for (int i_v = 0; i_v < netSize; i_v++) {
-			OrgMember v = id.get(i_v);
-			Set<OrgMember> v_neighbors = new HashSet<OrgMember>();
-			for(OrgMember v_neighbor: orgSocialNetwork.getAdjacent(v))
-				v_neighbors.add(v_neighbor);
-			for(OrgMember u : v_neighbors) {
-				int triType = -1;
-				if (id.indexOf(u) <= i_v)
-					continue;
-				Set<OrgMember> u_neighbors = new HashSet<OrgMember>();
-				for(OrgMember u_neighbor: orgSocialNetwork.getAdjacent(u))
-					u_neighbors.add(u_neighbor);
-				u_neighbors.addAll(v_neighbors);
-				u_neighbors.remove(u);
-				u_neighbors.remove(v);
-				//v and u are neighbors.
-				if (orgSocialNetwork.getEdge(u, v).getWeight() > tieStrengthThresh)
-					triType = 3;
-				if (orgSocialNetwork.getEdge(u, v).getWeight() <= tieStrengthThresh)
-					triType = 2;
-				modifiedTriadCounts[triType] += netSize - u_neighbors.size() - 2;
-				for (OrgMember w : u_neighbors) {
-					if (shouldCount(orgSocialNetwork, id, u, v, w)) {
-						modifiedTriadCounts[triType(triCode(orgSocialNetwork, u, v, w, tieStrengthThresh))] ++;
+		return getHybridTriadProportion(snapshot(orgSocialNetwork));
+	}
+
+	/**
+	 * The index of each triad type in the modifiedTriadCounts array, by the number of strong ties (first index) and weak ties (second index) of the triad.
+	 * -1 marks impossible combinations (more than three ties).
+	 */
+	protected static final int[][] TRIAD_TYPE = {
+		{1, 2, 4, 6},
+		{3, 5, 8, -1},
+		{7, 9, -1, -1},
+		{10, -1, -1, -1}};
+	/**
+	 * The names of the triad types in the modifiedTriadCounts array (index 0 is not used)
+	 */
+	public static final String[] TRIAD_NAMES = {"", "003", "012", "102", "021", "111", "030", "201", "120", "210", "300"};
+
+	/**
+	 * Same as {@link #getAvgTieStrength(ContextJungNetwork)}, but computed from a snapshot of the network.
+	 */
+	public static double getAvgTieStrength(NetworkSnapshot snapshot) {
+		double sumStrength = 0.;
+		for (int v = 0; v < snapshot.size(); v++)
+			for (int k = snapshot.offsets[v]; k < snapshot.offsets[v + 1]; k++)
+				if (snapshot.neighbors[k] > v)//count each tie once
+					sumStrength += snapshot.weights[k];
+		int numOfTies = snapshot.numEdges();
+		double avgTS = 0.;
+		if(numOfTies > 0){
+			avgTS = sumStrength / (double) numOfTies;
+			if(avgTS < Constants.smallValue) return 0.0;
+			else return avgTS;
+		}
+		else return -1;
+	}
+
+	/**
+	 * Same as {@link #getAvgClusterCoeff(ContextJungNetwork)}, but computed from a snapshot of the network.
+	 * As in JUNG, the clustering coefficient of a node with fewer than two neighbors is 0.
+	 */
+	public static double getAvgClusterCoeff(NetworkSnapshot snapshot) {
+		int netSize = snapshot.size();
+		long[] triangles = getTriangles(snapshot);
+		double avgCC = 0.;
+		for (int v = 0; v < netSize; v++) {
+			int d = snapshot.degree(v);
+			if (d >= 2)
+				avgCC += triangles[v] / ((d * (d - 1)) / 2.0);
+		}
+		return avgCC/netSize;
+	}
+
+	/**
+	 * Count the triangles each node belongs to, i.e., the number of ties among its neighbors.
+	 *
+	 * Nodes are ranked by degree (ties broken by index), and every tie is oriented from the lower-ranked to the higher-ranked end.
+	 * A triangle is then found exactly once, at its lowest-ranked node v, as a common out-neighbor w of v and of another out-neighbor u of v.
+	 * Out-neighbors stay sorted by index, so the common ones are found by merging two sorted arrays. Since a node has at most O(sqrt(m)) higher-ranked neighbors,
+	 * counting takes O(m^1.5) time for m ties, however skewed the degrees are (Schank, T., & Wagner, D. (2005). Finding, counting and listing all triangles in large graphs).
+	 * The nodes are split among parallel tasks (@see TriangleTask), each of which counts into its own array.
+	 * @return the number of triangles of each node, indexed as in the snapshot
+	 */
+	public static long[] getTriangles(NetworkSnapshot snapshot) {
+		int netSize = snapshot.size();
+		if (netSize == 0)
+			return new long[0];
+		int[] outOffsets = new int[netSize + 1];
+		for (int v = 0; v < netSize; v++) {
+			int out = 0;
+			for (int k = snapshot.offsets[v]; k < snapshot.offsets[v + 1]; k++)
+				if (ranksHigher(snapshot, snapshot.neighbors[k], v))
+					out++;
+			outOffsets[v + 1] = outOffsets[v] + out;
+		}
+		int[] outNeighbors = new int[outOffsets[netSize]];
+		for (int v = 0; v < netSize; v++) {
+			int x = outOffsets[v];
+			for (int k = snapshot.offsets[v]; k < snapshot.offsets[v + 1]; k++)
+				if (ranksHigher(snapshot, snapshot.neighbors[k], v))
+					outNeighbors[x++] = snapshot.neighbors[k];
+		}
+		//a few tasks per thread are enough to balance the load; more tasks would only add arrays to sum up
+		int threshold = Math.max(64, netSize / (4 * ParallelStepper.getPool().getParallelism()));
+		return ParallelStepper.getPool().invoke(new TriangleTask(outOffsets, outNeighbors, 0, netSize, threshold));
+	}
+
+	protected static boolean ranksHigher(NetworkSnapshot snapshot, int u, int v) {
+		int du = snapshot.degree(u);
+		int dv = snapshot.degree(v);
+		return du > dv || (du == dv && u > v);
+	}
+
+	/**
+	 * The task that counts the triangles found at a range of nodes. @see #getTriangles(NetworkSnapshot)
+	 */
+	protected static class TriangleTask extends RecursiveTask<long[]> {
+
+		protected static final long serialVersionUID = 1L;
+		protected int[] outOffsets;
+		protected int[] outNeighbors;
+		protected int from;
+		protected int to;
+		/**
+		 * A task counts the triangles at its nodes itself if it has no more than this number of nodes; otherwise it splits.
+		 */
+		protected int threshold;
+
+		protected TriangleTask(int[] outOffsets, int[] outNeighbors, int from, int to, int threshold) {
+			this.outOffsets = outOffsets;
+			this.outNeighbors = outNeighbors;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from > threshold) {
+				int middle = (from + to) >>> 1;
+				TriangleTask left = new TriangleTask(outOffsets, outNeighbors, from, middle, threshold);
+				left.fork();
+				long[] result = new TriangleTask(outOffsets, outNeighbors, middle, to, threshold).compute();
+				long[] leftResult = left.join();
+				for (int v = 0; v < result.length; v++)
+					result[v] += leftResult[v];
+				return result;
+			}
+			long[] triangles = new long[outOffsets.length - 1];
+			for (int v = from; v < to; v++) {
+				for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+					int u = outNeighbors[k];
+					int a = outOffsets[v];
+					int b = outOffsets[u];
+					while (a < outOffsets[v + 1] && b < outOffsets[u + 1]) {
+						if (outNeighbors[a] < outNeighbors[b])
+							a++;
+						else if (outNeighbors[a] > outNeighbors[b])
+							b++;
+						else {
+							triangles[v]++;
+							triangles[u]++;
+							triangles[outNeighbors[a]]++;
+							a++;
+							b++;
+						}
 					}
 				}
 			}
+			return triangles;
 		}
-		int sum = 0;
-		for (int i = 2; i <= 10; i++) {
-			sum += modifiedTriadCounts[i];
+	}
+
+	/**
+	 * Same as {@link #getBetweenCentralization(ContextJungNetwork)}, but computed from a snapshot of the network.
+	 */
+	public static double getBetweenCentralization(NetworkSnapshot snapshot) {
+		int netSize = snapshot.size();
+		double[] bc = getBetweenness(snapshot);
+		double maxBC = 0.;
+		double sumBC = 0.;
+		for (int v = 0; v < netSize; v++)
+			if (bc[v] > maxBC)
+				maxBC = bc[v];
+		for (int v = 0; v < netSize; v++)
+			sumBC += maxBC - bc[v];
+		return 2*sumBC/(Math.pow((netSize - 1), 2.)*(netSize - 2));
+	}
+
+	/**
+	 * Calculate the betweenness centrality of each node with Brandes' algorithm (Brandes, U. (2001). A faster algorithm for betweenness centrality.
+	 * Journal of Mathematical Sociology, 25(2), 163-177.), ignoring tie strength as JUNG does.
+	 * Since each shortest path of an undirected network is found from both of its ends, the scores are halved, also as JUNG does.
+	 *
+	 * The searches from different source nodes are independent, so they run in parallel (@see BrandesTask); each task adds up its own scores,
+	 * and the scores of two tasks are added when they join. Every task allocates arrays as long as the network, so the sources are split into only a few tasks per thread,
+	 * as in @see #getTriangles(NetworkSnapshot). The scores may therefore differ in the last digits with the number of threads.
+	 * If Constants.betweenSampleSize is positive and smaller than the network, the scores are estimated from that number of randomly chosen sources
+	 * (a different sample at every tick) and scaled up by n/k (Brandes, U., & Pich, C. (2007). Centrality estimation in large networks. International Journal of Bifurcation and Chaos, 17(7), 2303-2318.)
+	 * @return the betweenness centrality of each node, indexed as in the snapshot
+	 */
+	public static double[] getBetweenness(NetworkSnapshot snapshot) {
+		int netSize = snapshot.size();
+		int[] sources = new int[netSize];
+		for (int v = 0; v < netSize; v++)
+			sources[v] = v;
+		int numOfSources = netSize;
+		int sampleSize = Constants.betweenSampleSize;
+		if (sampleSize > 0 && sampleSize < netSize) {
+			//a partial Fisher-Yates shuffle puts a random sample in the first sampleSize places
+			//the sample is drawn anew for every tick, and is the same for the same seed and tick
+			RandomStream rng = RandomStream.forRun(SAMPLE_SALT).split(snapshot.getTick());
+			for (int i = 0; i < sampleSize; i++) {
+				int j = i + rng.nextInt(netSize - i);
+				int temp = sources[i];
+				sources[i] = sources[j];
+				sources[j] = temp;
+			}
+			numOfSources = sampleSize;
 		}
-		//the total number of triads is netSize!/(3!*(netSize - 3)!)
-		int totalTriads = netSize * (netSize-1) * (netSize-2) / 6;
-		modifiedTriadCounts[1] = totalTriads - sum;		
-		return (modifiedTriadCounts[6] + modifiedTriadCounts[7])/(double)totalTriads;
+		//a few tasks per thread are enough to balance the load; more tasks would only add arrays to allocate and sum up
+		int threshold = Math.max(BrandesTask.MIN_THRESHOLD, numOfSources / (4 * ParallelStepper.getPool().getParallelism()));
+		double[] bc = (netSize == 0)? new double[0] : ParallelStepper.getPool().invoke(new BrandesTask(snapshot, sources, 0, numOfSources, threshold));
+		double scale = (double) netSize / numOfSources / 2.;
+		for (int v = 0; v < netSize; v++)
+			bc[v] *= scale;
+		return bc;
 	}
-	
+
 	/**
-	 * Evaluate the relationship between nodes a and b
-	 * @param net
-	 * @param a
-	 * @param b
-	 * @param strengthThresh
-	 * @return
-	 * 		2: if nodes a and b are disconnected
-	 * 		1: if nodes a and b are weakly connected
-	 * 		0: if nodes a and b are strongly connected
+	 * Distinguishes the random stream that samples the sources of betweenness from other model-level streams. @see RandomStream#forRun(long)
 	 */
-	protected static int link(ContextJungNetwork<OrgMember> net, OrgMember a, OrgMember b, double avgTieStrength) {
-		if(!net.isAdjacent(a, b))
-			return 2;
-		else if(net.getEdge(a, b).getWeight() <= avgTieStrength)
-			return 1;
-		else return 0;
+	protected static final long SAMPLE_SALT = 18;
+
+	/**
+	 * The task that runs Brandes' searches from a range of source nodes and returns the sum of their dependencies on every node.
+	 */
+	protected static class BrandesTask extends RecursiveTask<double[]> {
+
+		protected static final long serialVersionUID = 1L;
+		/**
+		 * The smallest number of sources a task runs without splitting
+		 */
+		protected static final int MIN_THRESHOLD = 16;
+		protected NetworkSnapshot snapshot;
+		protected int[] sources;
+		protected int from;
+		protected int to;
+		/**
+		 * A task runs the searches one after another if it has no more than this number of sources; otherwise it splits.
+		 */
+		protected int threshold;
+
+		protected BrandesTask(NetworkSnapshot snapshot, int[] sources, int from, int to, int threshold) {
+			this.snapshot = snapshot;
+			this.sources = sources;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from > threshold) {
+				int middle = (from + to) >>> 1;
+				BrandesTask left = new BrandesTask(snapshot, sources, from, middle, threshold);
+				left.fork();
+				double[] result = new BrandesTask(snapshot, sources, middle, to, threshold).compute();
+				double[] leftResult = left.join();
+				for (int v = 0; v < result.length; v++)
+					result[v] += leftResult[v];
+				return result;
+			}
+			int netSize = snapshot.size();
+			int[] offsets = snapshot.offsets;
+			int[] neighbors = snapshot.neighbors;
+			double[] bc = new double[netSize];
+			int[] order = new int[netSize];
+			int[] dist = new int[netSize];
+			double[] sigma = new double[netSize];
+			double[] dependency = new double[netSize];
+			Arrays.fill(dist, -1);
+			for (int i = from; i < to; i++) {
+				int s = sources[i];
+				dist[s] = 0;
+				sigma[s] = 1.;
+				//breadth-first search; "order" works as the queue and keeps the vertices in non-decreasing distance from s
+				int head = 0;
+				int tail = 0;
+				order[tail++] = s;
+				while (head < tail) {
+					int v = order[head++];
+					for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+						int w = neighbors[k];
+						if (dist[w] < 0) {
+							dist[w] = dist[v] + 1;
+							order[tail++] = w;
+						}
+						if (dist[w] == dist[v] + 1)
+							sigma[w] += sigma[v];
+					}
+				}
+				//accumulate dependencies in non-increasing distance from s; the predecessors of w are its neighbors one step closer to s
+				for (int x = tail - 1; x > 0; x--) {
+					int w = order[x];
+					for (int k = offsets[w]; k < offsets[w + 1]; k++) {
+						int v = neighbors[k];
+						if (dist[v] == dist[w] - 1)
+							dependency[v] += sigma[v] / sigma[w] * (1. + dependency[w]);
+					}
+					bc[w] += dependency[w];
+				}
+				//only the reached vertices need resetting, which keeps a search from a small component cheap
+				for (int x = 0; x < tail; x++) {
+					int v = order[x];
+					dist[v] = -1;
+					sigma[v] = 0.;
+					dependency[v] = 0.;
+				}
+			}
+			return bc;
+		}
 	}
-	
+
 	/**
-	 * Decide whether a triad containing node w should be counted.
-	 * u and v are neighbors; u and w are neighbors; v and w may or may not be neighbors.
+	 * Same as {@link #getHybridTriadProportion(ContextJungNetwork)}, but computed from a snapshot of the network.
+	 * Ties stronger than the average tie strength are strong ties; the rest are weak ties.
 	 */
-	protected static boolean shouldCount(ContextJungNetwork<OrgMember> net, ArrayList<OrgMember> id, OrgMember u, OrgMember v, OrgMember w) {
-		int i_u = id.indexOf(u);
-		int i_w = id.indexOf(w);
-		if (i_u < i_w)
-			return true;
-		int i_v = id.indexOf(v);
-		if ((i_v < i_w) && (i_w < i_u) && (!net.isAdjacent(w, v)))
-			return true;
-		return false;
+	public static double getHybridTriadProportion(NetworkSnapshot snapshot) {
+		return getHybridTriadProportion(getModifiedTriadCensus(snapshot, getAvgTieStrength(snapshot)));
 	}
 
 	/**
-	 * This function implements the core idea of the aforementioned paper:
-	 * each non-empty, non-dyadic(dyadic tirads has one and only one tie) triad type (i.e., with at least 2 ties) is represented by a binary code.
-	 * This function is called by another function getHybridTriadProportion(), when u and w are connected (so are u and v).
-	 * Thus, the last bit of the binary code indicates whether u and v are weakly (1) or strongly (0) connected.
-	 * The second last bit indicates whether u and w are weakly (1) or strongly (0) connected.
-	 * The first two bits together indicate whether v and w are weakly (01) or strongly (00) connected or unconnected (10). Specifically,
-	 * <table>
-	 * <tr><th>binary form</th><th>triCode</th><th>triType</th><th>index in the counts array</th></tr>
-	 * <tr><td>00|0|0</td><td>0</td><td>300</td><td>10</td></tr>
-	 * <tr><td>00|0|1</td><td>1</td><td>210</td><td>9</td></tr>
-	 * <tr><td>00|1|0</td><td>2</td><td>210</td><td>9</td></tr>
-	 * <tr><td>00|1|1</td><td>3</td><td>120</td><td>8</td></tr>
-	 * <tr><td>01|0|0</td><td>4</td><td>210</td><td>9</td></tr>
-	 * <tr><td>01|0|1</td><td>5</td><td>120</td><td>8</td></tr>
-	 * <tr><td>01|1|0</td><td>6</td><td>120</td><td>8</td></tr>
-	 * <tr><td>01|1|1</td><td>7</td><td>030</td><td>6</td></tr>
-	 * <tr><td>10|0|0</td><td>8</td><td>201</td><td>7</td></tr>
-	 * <tr><td>10|0|1</td><td>9</td><td>111</td><td>5</td></tr>
-	 * <tr><td>10|1|0</td><td>10</td><td>111</td><td>5</td></tr>
-	 * <tr><td>10|1|1</td><td>11</td><td>021</td><td>4</td></tr>
-	 * </table>
-	 * @return
-	 * 		the decimal value of the binary code, an integer from [0, 11] 
+	 * @param modifiedTriadCounts
+	 * 		the result of the modified triad census @see #getModifiedTriadCensus(NetworkSnapshot, double)
+	 * @return the proportion of hybrid triads (030 and 201) in all triads
 	 */
-	public static int triCode(ContextJungNetwork<OrgMember> net, OrgMember u, OrgMember v, OrgMember w, double strengthThresh) {
-		int i = 0;
-		i += link(net, u, v, strengthThresh);
-		i += link(net, u, w, strengthThresh)*2;
-		i += link(net, v, w, strengthThresh)*4;
-		return i;
+	public static double getHybridTriadProportion(long[] modifiedTriadCounts) {
+		long totalTriads = 0;
+		for (int i = 1; i <= 10; i++)
+			totalTriads += modifiedTriadCounts[i];
+		return (modifiedTriadCounts[6] + modifiedTriadCounts[7])/(double)totalTriads;
 	}
-	
+
 	/**
-	 * Use the triCode to locate the appropriate triType
-	 * @param triCode
-	 * @return
-	 * 		the index of a specific triType in the modifiedTriadCounts array
+	 * Count the triads of every type in the modified triad census (@see #getHybridTriadProportion(ContextJungNetwork)).
+	 *
+	 * As in Batagelj and Mrvar's algorithm, every tie (v, u) with v < u is visited once. Each vertex w adjacent to u or v (but neither of them)
+	 * forms a triad with u and v, which is counted here if u < w, or if v < w < u and w is not adjacent to v, so that every triad with at least two ties
+	 * is counted exactly once; the other n - |N(u) U N(v)| - 2 vertices form triads whose only tie is (u, v).
+	 * N(u) U N(v) is found by merging the two sorted rows of the snapshot, which also tells the strength of the ties u-w and v-w (or that there is none),
+	 * so the census takes O(m*d) time for m ties and a maximum degree d, with no lookups and no allocation per triad.
+	 * The empty triads (003) make up the rest of all n*(n-1)*(n-2)/6 triads.
+	 * @param strengthThresh
+	 * 		ties stronger than this are strong ties; the rest are weak ties
+	 * @return the number of triads of each type, indexed as in the modifiedTriadCounts array (index 0 is not used) @see #TRIAD_NAMES
 	 */
-	public static int triType(int triCode) {
-		int[] codeToType = {10, 9, 9, 8, 9, 8, 8, 6, 7, 5, 5, 4};
-		return codeToType[triCode];
+	public static long[] getModifiedTriadCensus(NetworkSnapshot snapshot, double strengthThresh) {
+		int netSize = snapshot.size();
+		int[] offsets = snapshot.offsets;
+		int[] neighbors = snapshot.neighbors;
+		double[] weights = snapshot.weights;
+		long[] modifiedTriadCounts = new long[11];
+		for (int v = 0; v < netSize; v++) {
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				int u = neighbors[k];
+				if (u <= v)
+					continue;
+				//the number of strong and weak ties of the triad so far; v and u are neighbors.
+				int strong_uv = (weights[k] > strengthThresh)? 1 : 0;
+				int unionSize = 0;
+				int a = offsets[u];
+				int b = offsets[v];
+				int aEnd = offsets[u + 1];
+				int bEnd = offsets[v + 1];
+				while (a < aEnd || b < bEnd) {
+					int w;
+					double w_uw = -1;//-1 means no tie
+					double w_vw = -1;
+					if (b == bEnd || (a < aEnd && neighbors[a] < neighbors[b])) {
+						w = neighbors[a];
+						w_uw = weights[a++];
+					} else if (a == aEnd || neighbors[b] < neighbors[a]) {
+						w = neighbors[b];
+						w_vw = weights[b++];
+					} else {
+						w = neighbors[a];
+						w_uw = weights[a++];
+						w_vw = weights[b++];
+					}
+					if (w == u || w == v)
+						continue;
+					unionSize++;
+					if (u < w || (v < w && w_vw < 0)) {
+						int strong = strong_uv;
+						int weak = 1 - strong_uv;
+						if (w_uw >= 0) {
+							if (w_uw > strengthThresh) strong++;
+							else weak++;
+						}
+						if (w_vw >= 0) {
+							if (w_vw > strengthThresh) strong++;
+							else weak++;
+						}
+						modifiedTriadCounts[TRIAD_TYPE[strong][weak]]++;
+					}
+				}
+				modifiedTriadCounts[(strong_uv == 1)? 3 : 2] += netSize - unionSize - 2;
+			}
+		}
+		long sum = 0;
+		for (int i = 2; i <= 10; i++)
+			sum += modifiedTriadCounts[i];
+		//the total number of triads is netSize!/(3!*(netSize - 3)!)
+		long totalTriads = (long) netSize * (netSize-1) * (netSize-2) / 6;
+		modifiedTriadCounts[1] = totalTriads - sum;
+		return modifiedTriadCounts;
 	}
 
 	/**
@@ -313,15 +750,28 @@ public class NetworkAnalysis extends Metrics {
      * constraint(i) = sum_{j in MP(i), j != i} localConstraint(i,j)
      * </pre>
      * where MP(i) is the set of i's neighbors(in a non-directed network context).
+     * The measure is cached until a tie of i or of i's neighbors changes. @see ConstraintCache
      * @return
 	 * 		the constraint measure
      * @see #localConstraint(Object, Object)
      */
     public static double constraint(ContextJungNetwork<OrgMember> net, OrgMember i) {
-        double result = 0;
-        for(OrgMember j : net.getAdjacent(i))
-        	result += localConstraint(net, i, j);
-        return result;
+        return constraintCache.constraint(view(net), i);
+    }
+    
+    /**
+     * Measure what the constraint of i would be if the strength of its tie with j changed by delta.
+     * If i and j are not connected, a tie of strength delta is assumed.
+     * The assumed tie is never added to the network, and the cached measures are only read, never written,
+     * so the evaluation has no side effect and can run concurrently with other evaluations.
+     * @param delta
+     * 		the assumed change of tie strength
+     * @return
+     * 		the hypothetical constraint measure
+     * @see #constraint(ContextJungNetwork, OrgMember)
+     */
+    public static double constraint(ContextJungNetwork<OrgMember> net, OrgMember i, OrgMember j, double delta) {
+    	return constraintCache.hypotheticalConstraint(view(net), i, j, delta);
     }
     /**
      * Return the local constraint on <code>i</code> from a lack of primary holes around its neighbor <code>j</code>.
@@ -338,11 +788,7 @@ public class NetworkAnalysis extends Metrics {
      */
     public static double localConstraint(ContextJungNetwork<OrgMember> net, OrgMember i, OrgMember j) 
     {	
-        double nmtw_ij = normalizedTieWeight(net, i, j);
-        double inner_result = 0;
-        for (OrgMember q : net.getAdjacent(i))
-            inner_result += normalizedTieWeight(net, i, q) * normalizedTieWeight(net, q, j);
-        return (nmtw_ij + inner_result) * (nmtw_ij + inner_result);
+        return constraintCache.localConstraint(view(net), i, j);
     }
     /**
      * Return the proportion of <code>i</code>'s network time and energy invested
@@ -351,23 +797,14 @@ public class NetworkAnalysis extends Metrics {
      * normalizedMutualEdgeWeight(a,b) = mutual_weight(a,b) / (sum_c mutual_weight(a,c))
      * </pre>
      * Returns 0 if either numerator or denominator = 0, or if <code>v1 == v2</code>.
+     * The denominator is taken from the constraint cache.
      */
     protected static double normalizedTieWeight(ContextJungNetwork<OrgMember> net, OrgMember v1, OrgMember v2)
     {
-        if (v1.getID() == v2.getID() || !net.isAdjacent(v1, v2))
-            return 0;
-        double numerator = net.getEdge(v1, v2).getWeight();
-        if (numerator == 0)
-            return 0;
-        double denominator = 0;
-        for (OrgMember g : net.getAdjacent(v1))
-            denominator += net.getEdge(v1, g).getWeight();
-        if (denominator == 0)
-            return 0; 
-        return numerator / denominator;
+        return constraintCache.normalizedTieWeight(view(net), v1, v2);
     }
 	/**
-	 * Update a specific element of the tie strength history matrix.
+	 * Update the historically accumulated strength of a specific pair of agents.
 	 * Note: agent ID starts from "1"
 	 * @param agentB
 	 * @param agentA
@@ -384,22 +821,27 @@ public class NetworkAnalysis extends Metrics {
 	 * @return
 	 */
 	public static double updateTieStrength(int agentA, int agentB, double delta, boolean decay) {
-		//row is always <= col; the purpose is to use only semi-matrix
 		if(agentA == agentB){
 			System.out.println("NetworkAnalysis.javaL387: Wrong!\n");
 			return 0.;
 		}
-		int row = (agentA < agentB)? (agentA - 1):(agentB - 1);
-		int col = (agentA < agentB)? (agentB - 1):(agentA - 1);
-		double oldRecord = tieHistory[row][col];
+		if(tieDecay != null) tieDecay.settleHistory(agentA, agentB);
+		double oldRecord = tieHistory.getStrength(agentA, agentB);
 		double newRecord = oldRecord + delta;
-		tieHistory[row][col] = newRecord;
-		if(!decay) tieUsePerProblem[row][col]--;//because whenever a request was sent out, this value gets ++;
+		if(!decay) tieHistory.addUse(agentA, agentB, -1);//because whenever a request was sent out, this value gets ++;
 		else{
-			if(oldRecord <= Constants.tieDecayMin) tieHistory[row][col] = oldRecord;
-			else if(newRecord < Constants.tieDecayMin) tieHistory[row][col] = Constants.tieDecayMin;
+			if(oldRecord <= Constants.tieDecayMin) newRecord = oldRecord;
+			else if(newRecord < Constants.tieDecayMin) newRecord = Constants.tieDecayMin;
 		}
-		return tieHistory[row][col];
+		tieHistory.setStrength(agentA, agentB, newRecord);
+		return newRecord;
+	}
+	/**
+	 * @return the historically accumulated strength of a specific pair of agents
+	 */
+	public static double getTieHistoryStrength(int agentA, int agentB) {
+		if(tieDecay != null) return tieDecay.peekHistory(agentA, agentB);
+		return tieHistory.getStrength(agentA, agentB);
 	}
 	/**
 	 * Every time when a request message is sent out, the value of the matrix element adds 1, indicating that the corresponding tie is used once.
@@ -408,42 +850,75 @@ public class NetworkAnalysis extends Metrics {
 	 * @param agentA
 	 * @param agentB
 	 */
-	public static void updateTieUse(String agentA, String agentB) {
-		if(agentA.equals(agentB)){
+	public static void updateTieUse(int agentA, int agentB) {
+		if(agentA == agentB){
 			System.out.println("NetworkAnalysis.javaL387: Wrong!\n");
 			return;
 		}
-		int row = (Integer.parseInt(agentA) < Integer.parseInt(agentB))? (Integer.parseInt(agentA) - 1):(Integer.parseInt(agentB) - 1);
-		int col = (Integer.parseInt(agentA) < Integer.parseInt(agentB))? (Integer.parseInt(agentB) - 1):(Integer.parseInt(agentA) - 1);
-		tieUsePerProblem[row][col]++;
+		tieHistory.addUse(agentA, agentB, 1);
 	}
 	
 	/**
 	 * All network ties (social relations) will be subject to strength decay.
 	 * The tie decay rate is independent of any interactions but inversely proportional to tie strength
 	 * Ties whose strength has fallen below the minimal value will be deleted
+	 * If ties decay lazily (@see TieDecay), only the expired ties are visited.
 	 */
 	public static void tieDecayRemove(ContextJungNetwork<OrgMember> net){
-		ArrayList<RepastEdge<OrgMember>> tieCollection = new ArrayList<RepastEdge<OrgMember>>();
+		if(tieDecay != null){
+			for(long pair: tieDecay.advance()){
+				OrgMember a = MemberRegistry.get(TieHistory.first(pair));
+				OrgMember b = MemberRegistry.get(TieHistory.second(pair));
+				double oldWeight = tieDecay.getWeight(a.getID(), b.getID(), tieDecay.getClock() - 1);
+				removeStoredTie(net, a, b);
+				if(triangleCounter != null) triangleCounter.tieRemoved(view(net), a, b);
+				if(egoDensityCache != null) egoDensityCache.tieChanged(view(net), a, b);
+				if(networkStats != null) networkStats.tieRemoved(oldWeight);
+			}
+			if(networkStats != null){
+				networkStats.allTiesDecayed(Constants.tieDecayMin);
+				//the running sum is recounted now and then, so that its rounding errors do not build up over a long run
+				if(tieDecay.getClock() % NetworkStats.RECOUNT_INTERVAL == 0) networkStats.recount(getTies(net));
+			}
+			if(constraintCache != null) constraintCache.invalidateAll();
+			return;
+		}
+		DataIO.PajekTies ties = getTies(net);
+		ArrayList<Integer> tieCollection = new ArrayList<Integer>();
 		double oldWeight = 0.;
 		double newWeight = 0.;
-		for(RepastEdge<OrgMember> currentTie : net.getEdges()){
-			oldWeight = currentTie.getWeight();
+		//the strength of the remaining ties, which is summed up on the way
+		double strengthSum = 0.;
+		for(int t = 0; t < ties.numOfTies; t++){
+			int agentA = ties.ends[2*t];
+			int agentB = ties.ends[2*t + 1];
+			oldWeight = ties.weights[t];
 			//System.out.println("OrgBuilder.java L285. OldWeight = " + oldWeight + "\n");
 			if(oldWeight <= Constants.tieDecayMin)
-				tieCollection.add(currentTie);
+				tieCollection.add(t);
 			else{
 				newWeight = oldWeight*(1-Constants.tieDecayMin/oldWeight);
 				//newWeight = oldWeight*(1-1/Math.log1p(Math.exp(1.0) + oldWeight));//must ensure that newWeight is between 0 and oldWeight, because the minimal strength for an active tie is Constants.tieDecayMin = 0.1
 				//System.out.println("OrgBuilder.java L286. NewWeight = " + newWeight + "\n");
-				updateTieStrength(Integer.parseInt(currentTie.getSource().getID()),
-					Integer.parseInt(currentTie.getTarget().getID()), newWeight - oldWeight, true);	
+				updateTieStrength(agentA, agentB, newWeight - oldWeight, true);	
 				if(newWeight <= Constants.tieDecayMin)
-					tieCollection.add(currentTie);
-				else currentTie.setWeight(newWeight);
+					tieCollection.add(t);
+				else{
+					setStoredWeight(net, MemberRegistry.get(agentA), MemberRegistry.get(agentB), newWeight);
+					strengthSum += newWeight;
+				}
 			}
 		}
-		for(RepastEdge<OrgMember> tie: tieCollection)
-			net.removeEdge(tie);
+		for(int t: tieCollection){
+			OrgMember a = MemberRegistry.get(ties.ends[2*t]);
+			OrgMember b = MemberRegistry.get(ties.ends[2*t + 1]);
+			removeStoredTie(net, a, b);
+			//few ties expire at a time, so the triangle counts follow each of them
+			if(triangleCounter != null) triangleCounter.tieRemoved(view(net), a, b);
+			if(egoDensityCache != null) egoDensityCache.tieChanged(view(net), a, b);
+		}
+		if(networkStats != null) networkStats.reset(view(net).numEdges(), strengthSum);
+		//every tie has changed, so it is cheaper to drop all cached constraints than to follow each tie
+		if(constraintCache != null) constraintCache.invalidateAll();
 	}
 }
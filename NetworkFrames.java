@@ -0,0 +1,387 @@
+package orgKTNet;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class stores the organizational social network of many ticks in a compact binary file, one frame per tick,
+ * which is much cheaper to write than a Pajek file per tick (@see DataIO#outputPajek). @see Constants#switch_NFR
+ *
+ * A file starts with the magic number and the format version (two ints), followed by frames. Each frame has a header
+ * <pre>
+ * byte kind (FULL or DELTA), int tick, int N (the number of vertices), int E (the number of records)
+ * </pre>
+ * and then E records (int, int, float): the smaller ID, the larger ID, and the strength of a tie. Records are sorted by the two IDs.
+ * A full frame lists all ties. A delta frame only lists the ties that differ from the previous frame:
+ * a new or re-weighted tie with its new strength, and a removed tie with strength NaN.
+ * Every KEYFRAME_INTERVAL-th frame is a full frame, and so is the first frame a writer writes, so that a file appended by several runs can still be read.
+ * All numbers are big-endian (as written by DataOutputStream). Tie strength is kept in single precision.
+ *
+ * Files are read through a memory-mapped buffer. @see Reader
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class NetworkFrames {
+
+	public static final int MAGIC = 0x4F4B544E;//"OKTN"
+	public static final int VERSION = 1;
+	public static final byte FULL = 0;
+	public static final byte DELTA = 1;
+	/**
+	 * A full frame is written after this number of delta frames
+	 */
+	public static final int KEYFRAME_INTERVAL = 100;
+
+	/**
+	 * The open writers; the key is the absolute path of the file.
+	 */
+	protected static HashMap<String, Writer> writers = new HashMap<String, Writer>();
+
+	/**
+	 * Append a frame of the network to a file. The frame is written by the output thread from a snapshot of the network. @see OutputPipeline
+	 * @param fileName
+	 * 		the binary network file, which stays open until the run ends
+	 * @param delta
+	 * 		whether the frame may be delta-encoded against the previous frame of the file
+	 */
+	public static void outputFrame(final String fileName, final int currentTick, ContextJungNetwork<OrgMember> orgSocialNetwork, final boolean delta) {
+		final NetworkSnapshot snapshot = NetworkAnalysis.snapshot(orgSocialNetwork);
+		OutputPipeline.submit(new Runnable() {
+			public void run() {
+				try {
+					open(fileName).write(currentTick, snapshot, delta);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the writer of the file, which is opened (in appending mode) if it has not been
+	 */
+	public static synchronized Writer open(String fileName) throws IOException {
+		String key = new File(fileName).getAbsolutePath();
+		Writer writer = writers.get(key);
+		if (writer == null) {
+			writer = new Writer(fileName);
+			writers.put(key, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Flush and close all open files. @see OutputPipeline#shutdown()
+	 */
+	public static synchronized void closeAll() {
+		for (Writer writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		writers.clear();
+	}
+
+	/**
+	 * Writes the frames of one file. It remembers the last frame, against which the next frame is delta-encoded.
+	 */
+	public static class Writer {
+		protected DataOutputStream output;
+		/**
+		 * The ties of the last frame (@see TieHistory#pairKey(int, int)), sorted, and their strength
+		 */
+		protected long[] lastKeys = null;
+		protected float[] lastWeights = null;
+		protected int framesSinceFull = 0;
+
+		public Writer(String fileName) throws IOException {
+			File file = new File(fileName);
+			boolean newFile = file.createNewFile() || file.length() == 0;
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+			if (newFile) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+			}
+		}
+
+		/**
+		 * Write the network of a tick as a full frame, or as a delta frame if allowed and possible.
+		 */
+		public void write(int tick, NetworkSnapshot snapshot, boolean delta) throws IOException {
+			int numEdges = snapshot.numEdges();
+			long[] keys = new long[numEdges];
+			float[] weights = new float[numEdges];
+			int e = 0;
+			//vertices are in ascending order of IDs and so are their neighbors, so the keys come out sorted
+			for (int v = 0; v < snapshot.size(); v++)
+				for (int k = snapshot.offsets[v]; k < snapshot.offsets[v + 1]; k++) {
+					int u = snapshot.neighbors[k];
+					if (u > v) {
+						keys[e] = TieHistory.pairKey(snapshot.ids[v], snapshot.ids[u]);
+						weights[e] = (float) snapshot.weights[k];
+						e++;
+					}
+				}
+			if (delta && lastKeys != null && framesSinceFull < KEYFRAME_INTERVAL) {
+				writeDelta(tick, snapshot.size(), keys, weights);
+				framesSinceFull++;
+			} else {
+				writeHeader(FULL, tick, snapshot.size(), numEdges);
+				for (int i = 0; i < numEdges; i++)
+					writeRecord(keys[i], weights[i]);
+				framesSinceFull = 0;
+			}
+			lastKeys = keys;
+			lastWeights = weights;
+		}
+
+		/**
+		 * Merge the sorted ties of the last frame and of this frame, and write the differences.
+		 */
+		protected void writeDelta(int tick, int numVertices, long[] keys, float[] weights) throws IOException {
+			int capacity = keys.length + lastKeys.length;
+			long[] changedKeys = new long[capacity];
+			float[] changedWeights = new float[capacity];
+			int changes = 0;
+			int a = 0;
+			int b = 0;
+			while (a < lastKeys.length || b < keys.length) {
+				if (b == keys.length || (a < lastKeys.length && lastKeys[a] < keys[b])) {
+					changedKeys[changes] = lastKeys[a++];
+					changedWeights[changes++] = Float.NaN;//removed
+				} else if (a == lastKeys.length || keys[b] < lastKeys[a]) {
+					changedKeys[changes] = keys[b];
+					changedWeights[changes++] = weights[b++];//added
+				} else {
+					if (Float.floatToIntBits(lastWeights[a]) != Float.floatToIntBits(weights[b])) {
+						changedKeys[changes] = keys[b];
+						changedWeights[changes++] = weights[b];//re-weighted
+					}
+					a++;
+					b++;
+				}
+			}
+			writeHeader(DELTA, tick, numVertices, changes);
+			for (int i = 0; i < changes; i++)
+				writeRecord(changedKeys[i], changedWeights[i]);
+		}
+
+		protected void writeHeader(byte kind, int tick, int numVertices, int numRecords) throws IOException {
+			output.writeByte(kind);
+			output.writeInt(tick);
+			output.writeInt(numVertices);
+			output.writeInt(numRecords);
+		}
+
+		protected void writeRecord(long key, float weight) throws IOException {
+			output.writeInt(TieHistory.first(key));
+			output.writeInt(TieHistory.second(key));
+			output.writeFloat(weight);
+		}
+
+		public void close() throws IOException {
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads the frames of a file one after another through a memory-mapped buffer, which keeps the network of the current frame.
+	 * A file is mapped as a whole, so it cannot be larger than 2GB.
+	 */
+	public static class Reader {
+		protected MappedByteBuffer buffer;
+		protected int tick = -1;
+		protected int numVertices = 0;
+		/**
+		 * The ties of the current frame, sorted, and their strength
+		 */
+		protected long[] keys = new long[0];
+		protected float[] weights = new float[0];
+
+		public Reader(String fileName) throws IOException {
+			FileInputStream input = new FileInputStream(fileName);
+			try {
+				FileChannel channel = input.getChannel();
+				if (channel.size() > Integer.MAX_VALUE)
+					throw new IOException(fileName + " is too large to be mapped");
+				//the mapping stays valid after the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				input.close();
+			}
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+				throw new IOException(fileName + " is not a network frame file");
+			int version = buffer.getInt();
+			if (version != VERSION)
+				throw new IOException(fileName + " has an unsupported version " + version);
+		}
+
+		/**
+		 * Move to the next frame.
+		 * @return false if there are no more frames
+		 */
+		public boolean next() throws IOException {
+			//another run may have appended to the file, which restarts with the magic number and the version
+			while (buffer.remaining() >= 8 && buffer.getInt(buffer.position()) == MAGIC)
+				buffer.position(buffer.position() + 8);
+			if (buffer.remaining() == 0)
+				return false;
+			byte kind = buffer.get();
+			tick = buffer.getInt();
+			numVertices = buffer.getInt();
+			int numRecords = buffer.getInt();
+			if (buffer.remaining() < numRecords * 12L)
+				throw new IOException("truncated frame at tick " + tick);
+			long[] recordKeys = new long[numRecords];
+			float[] recordWeights = new float[numRecords];
+			for (int i = 0; i < numRecords; i++) {
+				recordKeys[i] = TieHistory.pairKey(buffer.getInt(), buffer.getInt());
+				recordWeights[i] = buffer.getFloat();
+			}
+			if (kind == FULL) {
+				keys = recordKeys;
+				weights = recordWeights;
+			} else if (kind == DELTA)
+				apply(recordKeys, recordWeights);
+			else
+				throw new IOException("unknown frame kind " + kind);
+			return true;
+		}
+
+		/**
+		 * Merge the sorted changes of a delta frame into the current ties.
+		 */
+		protected void apply(long[] changedKeys, float[] changedWeights) {
+			long[] mergedKeys = new long[keys.length + changedKeys.length];
+			float[] mergedWeights = new float[mergedKeys.length];
+			int size = 0;
+			int a = 0;
+			int b = 0;
+			while (a < keys.length || b < changedKeys.length) {
+				if (b == changedKeys.length || (a < keys.length && keys[a] < changedKeys[b])) {
+					mergedKeys[size] = keys[a];
+					mergedWeights[size++] = weights[a++];
+				} else {
+					if (!Float.isNaN(changedWeights[b])) {
+						mergedKeys[size] = changedKeys[b];
+						mergedWeights[size++] = changedWeights[b];
+					}
+					if (a < keys.length && keys[a] == changedKeys[b])
+						a++;
+					b++;
+				}
+			}
+			keys = Arrays.copyOf(mergedKeys, size);
+			weights = Arrays.copyOf(mergedWeights, size);
+		}
+
+		public int getTick() {
+			return tick;
+		}
+
+		/**
+		 * @return the number of vertices of the current frame
+		 */
+		public int size() {
+			return numVertices;
+		}
+
+		public int numEdges() {
+			return keys.length;
+		}
+
+		/**
+		 * @return the smaller ID of the i-th tie
+		 */
+		public int getSource(int i) {
+			return TieHistory.first(keys[i]);
+		}
+
+		/**
+		 * @return the larger ID of the i-th tie
+		 */
+		public int getTarget(int i) {
+			return TieHistory.second(keys[i]);
+		}
+
+		public float getWeight(int i) {
+			return weights[i];
+		}
+	}
+
+	/**
+	 * Convert the frame of a tick into a Pajek file in the same layout as DataIO#outputPajek.
+	 * @return false if the file has no frame of that tick
+	 */
+	public static boolean toPajek(String frameFile, int tick, String pajekFile) throws IOException {
+		Reader reader = new Reader(frameFile);
+		while (reader.next()) {
+			if (reader.getTick() != tick)
+				continue;
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pajekFile, false)));
+			try {
+				writer.write("*Vertices " + reader.size());
+				writer.newLine();
+				for (int i = 1; i <= reader.size(); i++) {
+					writer.write(i + " \"" + String.valueOf(i) + "\"");
+					writer.newLine();
+				}
+				if (reader.numEdges() == 1)
+					writer.write("*Edge");
+				else if (reader.numEdges() > 1)
+					writer.write("*Edges");
+				writer.newLine();
+				for (int i = 0; i < reader.numEdges(); i++) {
+					writer.write(reader.getSource(i) + " " + reader.getTarget(i) + " " + reader.getWeight(i));
+					writer.newLine();
+				}
+			} finally {
+				writer.close();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Convert a Pajek file into a full frame, which is appended to a binary network file. @see DataIO#readPajek(String)
+	 * @param tick
+	 * 		the tick the frame is labeled with
+	 */
+	public static void fromPajek(String pajekFile, String frameFile, int tick) throws IOException {
+		DataIO.PajekTies ties = DataIO.readPajek(pajekFile);
+		if (ties == null)
+			return;
+		//ties listed twice (e.g., as two arcs) are merged, and the later strength is kept as in DataIO#inputPajek
+		HashMap<Long, Float> strength = new HashMap<Long, Float>();
+		for (int i = 0; i < ties.numOfTies; i++)
+			strength.put(TieHistory.pairKey(ties.ends[2*i], ties.ends[2*i + 1]), (float) ties.weights[i]);
+		long[] sorted = new long[strength.size()];
+		int size = 0;
+		for (Long key : strength.keySet())
+			sorted[size++] = key;
+		Arrays.sort(sorted);
+		Writer writer = new Writer(frameFile);
+		try {
+			writer.writeHeader(FULL, tick, ties.numVertices, sorted.length);
+			for (long key : sorted)
+				writer.writeRecord(key, strength.get(key));
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+import repast.simphony.engine.environment.RunEnvironment;
+import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.space.graph.RepastEdge;
+
+/**
+ * This class is an immutable copy of the organizational social network, stored as a compressed sparse row (CSR) adjacency structure.
+ *
+ * Vertices are numbered 0 to n-1 in ascending order of agent IDs. The neighbors of vertex v are
+ * neighbors[offsets[v]] to neighbors[offsets[v+1]-1], sorted in ascending order, and weights[k] is the strength of the tie to neighbors[k].
+ * Every tie is stored twice, once for each end.
+ *
+ * A snapshot is taken from the store of the network (@see NetworkAnalysis#snapshot(ContextJungNetwork)). Taking it costs O(N+E) on the simulation thread. Since a snapshot never changes afterwards,
+ * network measures can be computed from it on another thread while the agents keep changing the network. @see OutputPipeline
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class NetworkSnapshot {
+
+	/**
+	 * The agent ID of each vertex
+	 */
+	protected final int[] ids;
+	protected final int[] offsets;
+	protected final int[] neighbors;
+	protected final double[] weights;
+	protected final int numEdges;
+	/**
+	 * The tick at which the snapshot was taken, which tells the random samples drawn for different snapshots apart. @see NetworkAnalysis#getBetweenness(NetworkSnapshot)
+	 */
+	protected final int tick;
+
+	/**
+	 * Copy the current network.
+	 */
+	public NetworkSnapshot(ContextJungNetwork<OrgMember> net) {
+		ArrayList<OrgMember> nodes = new ArrayList<OrgMember>();
+		for (OrgMember node : net.getNodes())
+			nodes.add(node);
+		Collections.sort(nodes, new Comparator<OrgMember>() {
+			public int compare(OrgMember a, OrgMember b) {
+				return (a.getID() < b.getID())? -1 : ((a.getID() == b.getID())? 0 : 1);
+			}
+		});
+		int n = nodes.size();
+		ids = new int[n];
+		int maxID = 0;
+		for (int v = 0; v < n; v++) {
+			ids[v] = nodes.get(v).getID();
+			maxID = Math.max(maxID, ids[v]);
+		}
+		//from agent ID to vertex
+		int[] vertex = new int[maxID + 1];
+		for (int v = 0; v < n; v++)
+			vertex[ids[v]] = v;
+		offsets = new int[n + 1];
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] = offsets[v] + net.getDegree(nodes.get(v));
+		neighbors = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		//visiting the vertices in ascending order and appending each vertex to the rows of its neighbors
+		//fills every row in ascending order, so no row needs sorting
+		int[] cursor = new int[n];
+		System.arraycopy(offsets, 0, cursor, 0, n);
+		for (int u = 0; u < n; u++) {
+			OrgMember node = nodes.get(u);
+			for (RepastEdge<OrgMember> tie : net.getEdges(node)) {
+				OrgMember other = (tie.getSource() == node)? tie.getTarget() : tie.getSource();
+				int x = vertex[other.getID()];
+				neighbors[cursor[x]] = u;
+				weights[cursor[x]] = tie.getWeight();
+				cursor[x]++;
+			}
+		}
+		numEdges = offsets[n] / 2;
+		tick = currentTick();
+	}
+
+	/**
+	 * Copy the network stored in primitive arrays. Its rows are already in ascending order of agent IDs, and so are the vertices,
+	 * so every row is copied as it is.
+	 */
+	public NetworkSnapshot(PrimitiveOrgNetwork net) {
+		ArrayList<OrgMember> nodes = new ArrayList<OrgMember>();
+		for (OrgMember node : net.getNodes())
+			nodes.add(node);
+		Collections.sort(nodes, new Comparator<OrgMember>() {
+			public int compare(OrgMember a, OrgMember b) {
+				return (a.getID() < b.getID())? -1 : ((a.getID() == b.getID())? 0 : 1);
+			}
+		});
+		int n = nodes.size();
+		ids = new int[n];
+		int maxID = 0;
+		for (int v = 0; v < n; v++) {
+			ids[v] = nodes.get(v).getID();
+			maxID = Math.max(maxID, ids[v]);
+		}
+		int[] vertex = new int[maxID + 1];
+		for (int v = 0; v < n; v++)
+			vertex[ids[v]] = v;
+		offsets = new int[n + 1];
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] = offsets[v] + net.getDegree(nodes.get(v));
+		neighbors = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		for (int v = 0; v < n; v++) {
+			int id = ids[v];
+			for (int k = 0; k < offsets[v + 1] - offsets[v]; k++) {
+				neighbors[offsets[v] + k] = vertex[net.neighbors[id][k]];
+				weights[offsets[v] + k] = net.weightAt(id, k);
+			}
+		}
+		numEdges = offsets[n] / 2;
+		tick = currentTick();
+	}
+
+	/**
+	 * @return the current tick, or 0 before the schedule is set up
+	 */
+	protected static int currentTick() {
+		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+		return (schedule == null)? 0 : (int) schedule.getTickCount();
+	}
+
+	/**
+	 * @return the number of vertices (agents)
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return the number of ties
+	 */
+	public int numEdges() {
+		return numEdges;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the agent ID of vertex v
+	 */
+	public int getID(int v) {
+		return ids[v];
+	}
+
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * @return the position of u in the row of v (so that neighbors[position] = u), or -1 if u and v are not connected
+	 */
+	public int find(int v, int u) {
+		int low = offsets[v];
+		int high = offsets[v + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (neighbors[mid] < u)
+				low = mid + 1;
+			else if (neighbors[mid] > u)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	public boolean isAdjacent(int v, int u) {
+		return find(v, u) >= 0;
+	}
+
+	/**
+	 * @return the strength of the tie between v and u, or 0 if they are not connected
+	 */
+	public double getWeight(int v, int u) {
+		int k = find(v, u);
+		return (k < 0)? 0. : weights[k];
+	}
+}
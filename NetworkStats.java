@@ -0,0 +1,116 @@
+package orgKTNet;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class keeps the aggregates of the organizational social network that the agents compare themselves with at every tick
+ * (@see Environment#getPosition(int, boolean)): the number of ties and the sum of tie strength, from which the average degree,
+ * the average tie strength, and the density follow.
+ *
+ * The aggregates are counted once from the initial network and then follow every change made through the tie-mutation methods of NetworkAnalysis
+ * (@see NetworkAnalysis#addTie(ContextJungNetwork, OrgMember, OrgMember, double)), so that reading them takes O(1) instead of a walk over all nodes or ties.
+ * Since tie decay changes every tie at once, the aggregates are recounted during an eager decay (@see NetworkAnalysis#tieDecayRemove(ContextJungNetwork)),
+ * which also keeps the rounding errors of the running sum from accumulating. A lazy decay (@see TieDecay) takes the same strength from every remaining tie,
+ * so the sum follows it without visiting the ties, and the aggregates are only recounted every RECOUNT_INTERVAL decays to bound the rounding errors.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class NetworkStats {
+
+	/**
+	 * The number of lazy decays after which the aggregates are recounted. @see NetworkAnalysis#tieDecayRemove(ContextJungNetwork)
+	 */
+	public static final int RECOUNT_INTERVAL = 64;
+
+	protected int numOfTies;
+	protected double strengthSum;
+
+	/**
+	 * @param ties
+	 * 		all ties of the network (@see NetworkAnalysis#getTies(ContextJungNetwork))
+	 */
+	public NetworkStats(DataIO.PajekTies ties) {
+		recount(ties);
+	}
+
+	/**
+	 * Count the aggregates from scratch.
+	 */
+	public void recount(DataIO.PajekTies ties) {
+		double sum = 0.;
+		for (int t = 0; t < ties.numOfTies; t++)
+			sum += ties.weights[t];
+		reset(ties.numOfTies, sum);
+	}
+
+	/**
+	 * Set the aggregates, e.g., after they have been counted while visiting all ties for another purpose.
+	 */
+	public void reset(int numOfTies, double strengthSum) {
+		this.numOfTies = numOfTies;
+		this.strengthSum = strengthSum;
+	}
+
+	public void tieAdded(double weight) {
+		numOfTies++;
+		strengthSum += weight;
+	}
+
+	public void tieRemoved(double weight) {
+		numOfTies--;
+		strengthSum -= weight;
+	}
+
+	public void tieReweighted(double oldWeight, double newWeight) {
+		strengthSum += newWeight - oldWeight;
+	}
+
+	/**
+	 * Called when every remaining tie has lost the same strength, i.e., after a lazy decay. @see TieDecay
+	 */
+	public void allTiesDecayed(double decrement) {
+		strengthSum -= decrement * numOfTies;
+	}
+
+	public int getNumOfTies() {
+		return numOfTies;
+	}
+
+	/**
+	 * @return the sum of the degrees of all nodes, which is twice the number of ties in an undirected network
+	 */
+	public int getDegreeSum() {
+		return 2 * numOfTies;
+	}
+
+	public double getStrengthSum() {
+		return strengthSum;
+	}
+
+	/**
+	 * @see NetworkAnalysis#getAvgDC(ContextJungNetwork)
+	 */
+	public double getAvgDC(int numOfNodes) {
+		return (double) getDegreeSum() / (double) numOfNodes;
+	}
+
+	/**
+	 * @see NetworkAnalysis#getAvgTieStrength(ContextJungNetwork)
+	 */
+	public double getAvgTieStrength() {
+		if (numOfTies > 0) {
+			double avgTS = strengthSum / numOfTies;
+			if (avgTS < Constants.smallValue) return 0.0;
+			else return avgTS;
+		}
+		else return -1;
+	}
+
+	/**
+	 * @see NetworkAnalysis#getNetworkDensity(ContextJungNetwork)
+	 */
+	public double getNetworkDensity(int numOfNodes) {
+		int maxNumOfTies = numOfNodes * (numOfNodes - 1) / 2;
+		return (double) numOfTies / (double) maxNumOfTies;
+	}
+}
@@ -39,6 +39,10 @@ public class OrgBuilder implements ContextBuilder<Object> {
 	 *  The organizational expert index
 	 */ 
 	protected ExpertIndex ei = null;
+	/**
+	 *  The model parameters that stay the same during the run
+	 */
+	protected RunConfig config = null;
 
 	/**
 	 * This method coordinates agents by randomly executing their step functions and updating their information on the organizational social network (stored in some global variables).
@@ -61,14 +65,15 @@ public class OrgBuilder implements ContextBuilder<Object> {
 	@ScheduledMethod(start = 1, interval = 1, priority = 1)
 	public void activateAgents() {
 		Parameters params = RunEnvironment.getInstance().getParameters();
-		int currentProblem = (Integer) params.getValue("currentProblem");
-		int conditionID = (Integer) params.getValue("conditionID");
-		int numOfProblems = (Integer) params.getValue("numOfProblems");
-		int totalLeft = (Integer) params.getValue("totalLeft");
+		SimulationState state = SimulationState.current;
+		int currentProblem = state.getCurrentProblem();
+		int conditionID = config.conditionID;
+		int numOfProblems = config.numOfProblems;
+		int totalLeft = state.getTotalLeft();
 		System.out.println("totalLeft =" + totalLeft + '\n');
-		int orgSize = (Integer) params.getValue("orgSize");
-		int orgArea = (Integer) params.getValue("orgArea"); 
-		int memberArea = (Integer) params.getValue("memberArea");
+		int orgSize = config.orgSize;
+		int orgArea = config.orgArea; 
+		int memberArea = config.memberArea;
 		int prefBond = 0;
 		int prefMoreConn = 0;
 		int prefPreRespond = 0;
@@ -93,6 +98,8 @@ public class OrgBuilder implements ContextBuilder<Object> {
 			//DataIO.outputPajek(fileName, orgSize, orgSocialNetwork);
 			//DataIO.outputExpertise("output/expertise" + Integer.toString(conditionID) + ".csv", orgArea, memberArea, memberList, currentTick);
 			DataIO.outputTimeSeriesData(Integer.toString(conditionID), currentTick, (double)prefBond/orgSize, (double)prefMoreConn/orgSize, (double)prefPreRespond/orgSize, orgSocialNetwork, (double)(orgSize-totalLeft)/orgSize);
+			if(Constants.switch_NFR)
+				NetworkFrames.outputFrame("output/net" + Integer.toString(conditionID) + ".bnf", currentTick, orgSocialNetwork, Constants.switch_NFD);
 		} catch (Exception e) {
 			System.out.println("File output error.");
 			e.printStackTrace();
@@ -101,7 +108,7 @@ public class OrgBuilder implements ContextBuilder<Object> {
 		if (totalLeft == 0) {
 			//calculate the average time cost of learning agents
 			//excluding agents who are initially qualified in expertise
-			int activeLearner = (Integer) RunEnvironment.getInstance().getParameters().getValue("activeLearner");
+			int activeLearner = state.getActiveLearner();
 			//activeLearner ==0 means no knowledge transfer happens when the organization solves the current problem;
 			//in other words, every agent is initially qualified for its task.
 			totalTimeCost[currentProblem - 1] = currentTick - totalTimeCost[currentProblem - 1];
@@ -137,13 +144,14 @@ public class OrgBuilder implements ContextBuilder<Object> {
 			}
 			if (currentProblem == numOfProblems) {
 				System.out.println("All problems have been solved.");
+				state.syncTo(params);
 				RunEnvironment.getInstance().endRun();
 			} else {
-				params.setValue("currentProblem", currentProblem + 1);
+				state.startNextProblem(orgSize);
+				//the parameters are only synchronized at problem boundaries
+				state.syncTo(params);
 				totalTimeCost[currentProblem] = currentTick; //set up the initial value
-				params.setValue("totalLeft", orgSize);
-				params.setValue("activeLearner", orgSize);
-				int taskRange = (Integer) params.getValue("taskRange");
+				int taskRange = config.taskRange;
 				for (OrgMember member : memberList) {
 					member.idle = false;
 					member.myMessenger.reset();
@@ -161,14 +169,31 @@ public class OrgBuilder implements ContextBuilder<Object> {
 		}
 		
 		SimUtilities.shuffle(memberList, RandomHelper.getUniform());
-		params.setValue("avgDegreeCentrality", NetworkAnalysis.getAvgDC(orgSocialNetwork));
-		params.setValue("avgTieStrength", NetworkAnalysis.getAvgTieStrength(orgSocialNetwork));
-		params.setValue("networkDensity", NetworkAnalysis.getNetworkDensity(orgSocialNetwork));
-		for (OrgMember member : memberList)
-			member.step();
+		NetworkStats stats = NetworkAnalysis.networkStats;
+		state.setNetworkAggregates(stats.getAvgDC(orgSocialNetwork.size()),
+				stats.getAvgTieStrength(), stats.getNetworkDensity(orgSocialNetwork.size()));
+		//agents stepping in parallel see the network as it is now anyway, so their positions are always taken from the table
+		if(Constants.switch_POS || Constants.switch_PAR)
+			state.setPositionTable(new PositionTable(memberList, orgSocialNetwork, state));
+		else
+			state.setPositionTable(null);
+		if(Constants.switch_PAR)
+			ParallelStepper.step(memberList, orgSocialNetwork);
+		else
+			for (OrgMember member : memberList)
+				member.step();
 		//DataIO.outputNetworkPerStep(conditionID, orgSocialNetwork);
 	}
 
+	/**
+	 * Write all queued output records, then flush and close all output files at the end of the run. @see OutputPipeline
+	 * The tie history outlives the run, so the history decays that lazy tie decay has not applied yet are applied here as well. @see NetworkAnalysis#settleHistories()
+	 */
+	public void closeOutput() {
+		NetworkAnalysis.settleHistories();
+		OutputPipeline.shutdown();
+	}
+
 	/**
 	 * Construct the global context, set up global variables, and add agents to the context.
 	 * initialize the tasks, expertise, and environments of individual agents. Build organizational expert index.
@@ -211,41 +236,65 @@ public class OrgBuilder implements ContextBuilder<Object> {
 		
 		new Constants();
 		new DataIO();
+		//a previous run in the same JVM may have left some records queued or some files open
+		OutputPipeline.shutdown();
+		config = new RunConfig(params);
+		SimulationState.current = new SimulationState(params);
 		
-		avgTimeCost = new double[(Integer) params.getValue("numOfProblems")];
-		totalTimeCost = new int[(Integer) params.getValue("numOfProblems")];
+		avgTimeCost = new double[config.numOfProblems];
+		totalTimeCost = new int[config.numOfProblems];
 		for (int j = 0; j<avgTimeCost.length; j++){
 			avgTimeCost[j] = 0.;
 			totalTimeCost[j] = 0;
 		}
 				
 		for (int i = 0; i < orgSize; i++) {
-			OrgMember om = new OrgMember(context, ei, i + 1, avgTimeCost);//the ID of members start from 1
+			OrgMember om = new OrgMember(context, ei, i + 1, avgTimeCost, config);//the ID of members start from 1
 			context.add(om);
 			memberList.add(om);
 		}
+		new MemberRegistry(context);
 		if(Constants.switch_DKS == -2) ei.initialize(context);
 		NetworkBuilder<Object> netBuilder = new NetworkBuilder<Object>("socialNetwork", context, false);
+		if(Constants.switch_LTD){
+			//the ties of the previous run, if any, stop decaying
+			NetworkAnalysis.tieDecay = null;
+			netBuilder.setEdgeCreator(new DecayingTie.Creator<Object>());
+		}
 		ContextJungNetwork<OrgMember> initialNet = null;
 		if(!Constants.switch_IIS){
-			if(orgSize >= 10){
-				/**
-				* WattsBetaSmallWorldGenerator is a graph generator that produces a small world network using the beta-model as proposed by Duncan Watts.
-				* The basic ideas is to start with a one-dimensional ring lattice in which each vertex has k-neighbors
-				* and then randomly rewire the edges, with probability beta, in such a way that a small world networks can be created
-				* for certain values of beta and k that exhibit low characteristic path lengths and high clustering coefficient.
-				*/
-				NetworkGenerator<Object> smallWorldNetGenerator = 
-						new WattsBetaSmallWorldGenerator<Object>(Constants.SWRewirePr, Constants.SWAvgDeg, true);
-				netBuilder.setGenerator(smallWorldNetGenerator).buildNetwork();
+			if(Constants.switch_NGN){
+				DataIO.PajekTies ties = (orgSize >= 10)?
+						OrgNetworkGenerator.smallWorld(orgSize, Constants.SWAvgDeg, Constants.SWRewirePr, OrgNetworkGenerator.getRandomStream())
+						: OrgNetworkGenerator.randomDensity(orgSize, Constants.randomNetworkDensity, OrgNetworkGenerator.getRandomStream());
+				netBuilder.buildNetwork();
+				initialNet = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
+				NetworkAnalysis.createStore(initialNet);
+				//the members were created in the order of their IDs
+				OrgNetworkGenerator.addTies(initialNet, memberList, ties);
+				DataIO.outputPajek("output/net_initial.net", orgSize, ties);
 			}
 			else{
-				NetworkGenerator<Object> randomNetGenerator = 
-						new RandomDensityGenerator<Object>(Constants.randomNetworkDensity, false, true);
-				netBuilder.setGenerator(randomNetGenerator).buildNetwork();
+				if(orgSize >= 10){
+					/**
+					* WattsBetaSmallWorldGenerator is a graph generator that produces a small world network using the beta-model as proposed by Duncan Watts.
+					* The basic ideas is to start with a one-dimensional ring lattice in which each vertex has k-neighbors
+					* and then randomly rewire the edges, with probability beta, in such a way that a small world networks can be created
+					* for certain values of beta and k that exhibit low characteristic path lengths and high clustering coefficient.
+					*/
+					NetworkGenerator<Object> smallWorldNetGenerator = 
+							new WattsBetaSmallWorldGenerator<Object>(Constants.SWRewirePr, Constants.SWAvgDeg, true);
+					netBuilder.setGenerator(smallWorldNetGenerator).buildNetwork();
+				}
+				else{
+					NetworkGenerator<Object> randomNetGenerator = 
+							new RandomDensityGenerator<Object>(Constants.randomNetworkDensity, false, true);
+					netBuilder.setGenerator(randomNetGenerator).buildNetwork();
+				}
+				initialNet = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
+				NetworkAnalysis.createStore(initialNet);
+				DataIO.outputPajek("output/net_initial.net", orgSize, initialNet);
 			}
-			initialNet = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
-			DataIO.outputPajek("output/net_initial.net", orgSize, initialNet);
 			for(OrgMember member: memberList){
 				member.initiateTask(orgArea, taskRange);
 				member.initiateExpertise(orgArea, memberArea, maxKnowLevel);
@@ -256,6 +305,7 @@ public class OrgBuilder implements ContextBuilder<Object> {
 		else{
 			netBuilder.buildNetwork();
 			initialNet = (ContextJungNetwork<OrgMember>) context.getProjection("socialNetwork");
+			NetworkAnalysis.createStore(initialNet);
 			DataIO.inputPajek("output/net_initial.net", initialNet);
 			DataIO.inputTaskAssign("output/task1.csv", "1", context);
 			DataIO.inputExpertise("output/expertise1.csv", "0", memberArea, context);
@@ -267,6 +317,8 @@ public class OrgBuilder implements ContextBuilder<Object> {
 		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 		ScheduleParameters sParams = ScheduleParameters.createRepeating(1, 1, 1);
 		schedule.schedule(sParams, this, "activateAgents");
+		//the output files are closed when the run ends, whether all problems have been solved or the run is stopped
+		schedule.schedule(ScheduleParameters.createAtEnd(ScheduleParameters.LAST_PRIORITY), this, "closeOutput");
 				
 		return context;
 	}
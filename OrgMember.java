@@ -1,9 +1,9 @@
 package orgKTNet;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -11,10 +11,6 @@ import java.util.Queue;
 import java.util.Set;
 
 import repast.simphony.context.Context;
-import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.environment.RunState;
-import repast.simphony.parameter.Parameters;
-import repast.simphony.random.RandomHelper;
 
 
 /**
@@ -29,9 +25,9 @@ import repast.simphony.random.RandomHelper;
 public class OrgMember {
 
 	/**
-	 * start from "1"
+	 * start from 1
 	 */
-	protected String myID = null;
+	protected int myID;
 	/**
 	 * An agent's expertise is a bounded sorted map of specialty areas (the key is the index of an area and the value is a specialty-area class).
 	 * I use this data structure because both the number and the contents of an agent's specialty areas are continuously changing.
@@ -78,6 +74,25 @@ public class OrgMember {
 	 * Record a new strategy only when it is different from the previous one 
 	 */
 	public LinkedList<Integer> strategyChain = null;
+	/**
+	 * The agent's own random stream, derived from the random seed of the run and the agent ID.
+	 * The agent's environment and XCS draw from streams split from this one. @see RandomStream
+	 */
+	protected RandomStream rng = null;
+	/**
+	 * The model parameters that stay the same during the run
+	 */
+	protected RunConfig config = null;
+	/**
+	 * The actions that change state shared with other agents (e.g., other agents' inboxes, the social network, and organization-level counters).
+	 * It is null unless the agent is in the compute phase of parallel stepping, in which case such actions are queued here
+	 * and applied in the commit phase. @see #defer(Runnable) @see ParallelStepper
+	 */
+	protected ArrayList<Runnable> deferred = null;
+	/**
+	 * The agent's levels of knowledge at the beginning of the current step, read by other agents during parallel stepping (otherwise null).
+	 */
+	protected HashMap<Integer, Double> publishedExpertise = null;
 
 	/**
 	 * Construct an agent without assigning task and initializing expertise.
@@ -89,24 +104,28 @@ public class OrgMember {
 	 * 			The organization-wide expert index
 	 * @param memberID
 	 * 			The assigned ID of this agent
+	 * @param config
+	 * 			The model parameters of the run
 	 */
-	public OrgMember(Context<Object> context, ExpertIndex index, int memberID, double [] avgTimeCost) {
+	public OrgMember(Context<Object> context, ExpertIndex index, int memberID, double [] avgTimeCost, RunConfig config) {
+		myID = memberID;
+		this.config = config;
+		rng = RandomStream.forAgent(memberID);
 		myMessenger = new Messenger(this);
 		taskEnv = new Environment(this, index, avgTimeCost);
-		int maxAreaNum = (Integer) RunEnvironment.getInstance().getParameters().getValue("memberArea");
+		int maxAreaNum = config.memberArea;
 		myExpertise = new BoundedSortedMap<Integer, SpecialtyArea>(maxAreaNum);
-		myID = Integer.toString(memberID);
-		setSCPreference((Constants.drand() < 0.5)? 0:1);
-		setNDPreference((Constants.drand() < 0.5)? 0:1);
-		setRBPreference((Constants.drand() < 0.5)? 0:1);
+		setSCPreference((rng.nextDouble() < 0.5)? 0:1);
+		setNDPreference((rng.nextDouble() < 0.5)? 0:1);
+		setRBPreference((rng.nextDouble() < 0.5)? 0:1);
 		strategyChain = new LinkedList<Integer>();
 		strategyChain.add(getSCPreference()*4 + getNDPreference()*2 + getRBPreference());
 		if(Constants.switch_DKS == 2)
-			xcs = new XCS(taskEnv);
+			xcs = new XCS(taskEnv, rng.split(2));
 		if(Constants.switch_SGR == true)
 			rateOfSelfGain = Constants.selfGain;
 		else
-			rateOfSelfGain = RandomHelper.createNormal(Constants.selfGain, 0.1).nextDouble();
+			rateOfSelfGain = rng.nextGaussian(Constants.selfGain, 0.1);
 	}
 	
 	public OrgMember(){
@@ -149,9 +168,8 @@ public class OrgMember {
 	 * 		indicates whether the agent's task-required knowledge is initially insufficient and has increased via TRANSFER learning
 	 */
 	protected void finishIndividualTask() {
-		Parameters params = RunEnvironment.getInstance().getParameters();
-		int conditionID = (Integer) params.getValue("conditionID");
-		int currentProblem = (Integer) params.getValue("currentProblem");
+		int conditionID = config.conditionID;
+		int currentProblem = SimulationState.current.getCurrentProblem();
 		this.idle = true;
 		if(Constants.switch_DKS == -2) taskEnv.addToExpertIndex();
 		taskEnv.reportTimeCost();
@@ -165,17 +183,61 @@ public class OrgMember {
 			this.setNDPreference(Integer.parseInt(preferences.substring(1,2)));
 			this.setRBPreference(Integer.parseInt(preferences.substring(2,3)));*/
 		}
-		int totalLeft = (Integer) RunEnvironment.getInstance().getParameters()
-				.getValue("totalLeft") - 1;
-		RunEnvironment.getInstance().getParameters()
-				.setValue("totalLeft", totalLeft);
-		taskEnv.clearLocalNet();
+		defer(new Runnable() {
+			public void run() {
+				SimulationState.current.memberFinished();
+				taskEnv.clearLocalNet();
+			}
+		});
+	}
+
+	/**
+	 * Apply an action that changes state shared with other agents.
+	 * During the compute phase of parallel stepping, the action is queued and applied in the commit phase, in which
+	 * the actions of all agents are applied in the (shuffled) order of agents and each agent's actions in the order they were queued.
+	 * Otherwise the action is applied at once.
+	 * @param action
+	 * 		the action to be applied
+	 */
+	public void defer(Runnable action) {
+		if (deferred == null)
+			action.run();
+		else
+			deferred.add(action);
+	}
+
+	/**
+	 * @return this agent's level of knowledge in each of its specialty areas, in the order of the areas in its expertise
+	 */
+	public LinkedHashMap<Integer, Double> getExpertiseLevels() {
+		LinkedHashMap<Integer, Double> levels = new LinkedHashMap<Integer, Double>();
+		for (Entry<Integer, SpecialtyArea> expertise : myExpertise.entrySet())
+			levels.put(expertise.getKey(), expertise.getValue().currentLevel);
+		return levels;
+	}
+
+	/**
+	 * Publish the agent's current levels of knowledge so that other agents can read them while this agent steps in parallel.
+	 */
+	public void publishExpertise() {
+		publishedExpertise = getExpertiseLevels();
+	}
+
+	/**
+	 * @return this agent's knowledge level in a specialty area as seen by other agents:
+	 * 		the published level during parallel stepping, or the current level otherwise. 
+	 */
+	public double getPublishedExpertise(int key) {
+		if (publishedExpertise == null)
+			return getExpertise(key);
+		Double level = publishedExpertise.get(key);
+		return (level == null)? 0.0 : level;
 	}
 
 	/**
 	 * @return this agent's ID
 	 */
-	public String getID() {
+	public int getID() {
 		return myID;
 	}
 
@@ -240,8 +302,8 @@ public class OrgMember {
 	 */
 	public void initiateExpertise(int totalArea, int memberArea, int maxKnowLevel) {
 		while (myExpertise.size() < memberArea){
-			SpecialtyArea sa = new SpecialtyArea((double)RandomHelper.getUniform().nextIntFromTo(1, maxKnowLevel), -1);
-			myExpertise.put(RandomHelper.getUniform().nextIntFromTo(0, totalArea-1), sa, false);
+			SpecialtyArea sa = new SpecialtyArea((double)rng.nextIntFromTo(1, maxKnowLevel), -1);
+			myExpertise.put(rng.nextIntFromTo(0, totalArea-1), sa, false);
 		}
 		taskEnv.reset();
 	}
@@ -268,11 +330,11 @@ public class OrgMember {
 		for(int i = 0; i < taskEnv.currentTask.length; i++)
 			oldTask.add(taskEnv.currentTask[i]);
 		while(index.size() < numOfChange)
-			index.add(RandomHelper.getUniform().nextIntFromTo(0, taskRange-1));//in nextIntFromTo, both extremes of the range are inclusive.
+			index.add(rng.nextIntFromTo(0, taskRange-1));//in nextIntFromTo, both extremes of the range are inclusive.
 		for(Integer toChange: index){
 			int newTask = 0;
 			do{
-				newTask = RandomHelper.getUniform().nextIntFromTo(0, totalArea-1);
+				newTask = rng.nextIntFromTo(0, totalArea-1);
 			}while (oldTask.contains(newTask));
 			taskEnv.currentTask[toChange.intValue()] = newTask;
 			oldTask.add(newTask);
@@ -289,7 +351,7 @@ public class OrgMember {
 	public void initiateTask(int totalArea, int taskRange) {
 		Set<Integer> setTemp = new HashSet<Integer>();
 		while(setTemp.size() < taskRange)
-			setTemp.add(RandomHelper.getUniform().nextIntFromTo(0, totalArea-1));
+			setTemp.add(rng.nextIntFromTo(0, totalArea-1));
 		Integer [] arrayTemp = new Integer[taskRange];
 		setTemp.toArray(arrayTemp);
 		for (int j = 0; j < taskRange; j++)
@@ -305,8 +367,7 @@ public class OrgMember {
 	 * @return false otherwise
 	 */
 	public boolean meetRequirements() {
-		Parameters params = RunEnvironment.getInstance().getParameters();
-		int requiredLevel = (Integer) params.getValue("maxKnowLevel");
+		int requiredLevel = config.maxKnowLevel;
 		for (int element : taskEnv.currentTask){
 			if(!myExpertise.containsKey(element)){
 				//myExpertise.put(element, new SpecialtyArea(0), false);
@@ -389,14 +450,13 @@ public class OrgMember {
 				return;
 			}
 			taskEnv.timeCost++;
-			Constants.setSeed(1 + new Date().getTime() % 10000);
-			int requiredLevel = (Integer) RunEnvironment.getInstance().getParameters().getValue("maxKnowLevel");
+			int requiredLevel = config.maxKnowLevel;
 			boolean processMsg = false;
 			Queue<Message> postPonedMsg = new LinkedList<Message> ();
 			while (!myMessenger.inbox.isEmpty() && !processMsg){
 				Message msg = myMessenger.inbox.poll();
 				if(msg.isRequest) {
-					if (RandomHelper.nextDoubleFromTo(0, 1) <= taskEnv.getReplyProb(msg.getFrom())){
+					if (rng.nextDouble() <= taskEnv.getReplyProb(msg.getFrom())){
 						processMsg = true;
 						myMessenger.answerRequest(msg, RBPreference); 
 					}
@@ -410,7 +470,14 @@ public class OrgMember {
 						xcs.actionSet.updateSet(msg, payoff);
 					//only when the knowledge transfer is successful will the tie be established or strengthened
 					//modify tie including change tie history matrix
-					taskEnv.modifyTie(msg.getBaseCl(), msg.getFrom(), payoff);
+					final XClassifier baseCl = msg.getBaseCl();
+					final int sourceID = msg.getFrom();
+					final double reward = payoff;
+					defer(new Runnable() {
+						public void run() {
+							taskEnv.modifyTie(baseCl, sourceID, reward);
+						}
+					});
 					//taskEnv.modifyTie(msg.getBaseCl(), msg.getFrom());
 				}
 			}
@@ -431,11 +498,10 @@ public class OrgMember {
 							if(strategyChain.peekLast() != value) strategyChain.add(value);
 							//System.out.println("value = " + value + "\n");
 							//if(value != 0) System.out.println("I'm not zero! Yeah!\n");
-							String preferences = String.format("%3s", Integer.toBinaryString(value)).replace(
-									" ", "0");
-							this.setSCPreference(Integer.parseInt(preferences.substring(0, 1)));
-							this.setNDPreference(Integer.parseInt(preferences.substring(1, 2)));
-							this.setRBPreference(Integer.parseInt(preferences.substring(2, 3)));
+							//the three bits of the action are the SC, ND, and RB preferences (from the highest to the lowest bit)
+							this.setSCPreference((value >> 2) & 1);
+							this.setNDPreference((value >> 1) & 1);
+							this.setRBPreference(value & 1);
 							break;
 						case -2://choose from the expert index
 							this.setSCPreference(-2);
@@ -451,11 +517,11 @@ public class OrgMember {
 							break;	
 					}
 					int size = taskEnv.collectSource(getSCPreference(), getNDPreference());
-					HashMap<String, String> requestList = null;
+					HashMap<Integer, String> requestList = null;
 					if(size > 0) requestList = taskEnv.getSourceList();
 					XClassifier cl = null;
 					if (requestList != null){
-						for (Map.Entry<String, String> source : requestList.entrySet()) {
+						for (Map.Entry<Integer, String> source : requestList.entrySet()) {
 							if(Constants.switch_DKS == 2){
 								String condition = myPosition + source.getValue().substring(0,3);
 								//the value of sourceList is partialCl, which represents the source's position (3 bits), its relation type with the recipient/SCPreference (1 bit), NDPreference (1 bit), and RBPreference (1 bit)
@@ -465,23 +531,28 @@ public class OrgMember {
 								//The second classifier being tried has an action part that "allows" degree increment.
 								XClassifier	cl2 = xcs.matchSet.getMatchClassifier(condition, action+1, false);
 								if(cl1 != null && cl2 != null)
-									cl = (Constants.drand() < 0.5)? cl1: cl2;
+									cl = (rng.nextDouble() < 0.5)? cl1: cl2;
 								else if(cl1 == null && cl2 != null)
 									cl = cl2;
 								else if(cl2 == null && cl1 != null)
 									cl = cl1;
 								else //cl1 == null && cl2 == null
-									cl = new XClassifier(-1, -1, 8, myPosition + "###");
+									cl = new XClassifier(-1, -1, 8, myPosition + "###", xcs.population.rng);
 								//When adding the classifier to the action set, change the actionSetSize and timeStamp fields
 								cl = xcs.addClassifierToAction(cl);
 							}
 							//int currentTick = (int) RunEnvironment.getInstance().getCurrentSchedule().getTickCount();
 							myMessenger.send(true, source.getKey(), taskEnv.checkGaps(), cl);
-							NetworkAnalysis.updateTieUse(myID, source.getKey());
+							final int sourceID = source.getKey();
+							defer(new Runnable() {
+								public void run() {
+									NetworkAnalysis.updateTieUse(myID, sourceID);
+								}
+							});
 						}
 					}
 					else if(Constants.switch_DKS == 2)
-						xcs.addClassifierToAction(new XClassifier(-1, -1, 8, myPosition + "###"));
+						xcs.addClassifierToAction(new XClassifier(-1, -1, 8, myPosition + "###", xcs.population.rng));
 				}
 			}
 		}  
@@ -546,22 +617,16 @@ public class OrgMember {
 	 * 		the average learning rate associated with a specific knowledge source.
 	 * 		It will be the reward of the corresponding classifier and used in the XCS.
 	 */
-	public double transferLearning(int maxLevel, HashMap<Integer, Double> msgContent, String sourceID) {
+	public double transferLearning(int maxLevel, HashMap<Integer, Double> msgContent, int sourceID) {
 		double sumOfGain = 0.0;
-		OrgMember source = null;
-		Iterable<OrgMember> members = RunState.getInstance().getMasterContext().getObjects(OrgMember.class);
-		for(OrgMember member: members)
-			if(member.getID() == sourceID){
-				source = member;
-				break;
-			}
+		OrgMember source = MemberRegistry.get(sourceID);
 		//transferLearning() is called under a condition that the focal agent is not idle,
 		//so there must be at least one area in which the focal agent hasn't achieve the maximal knowledge. 
 		for(int j = 0; j < taskEnv.currentTask.length; j++){
 			int task = taskEnv.currentTask[j];
 			if(!myExpertise.containsKey(task))
 					myExpertise.put(task, new SpecialtyArea(0, 2), false);
-			double sourceKL = source.getExpertise(task);
+			double sourceKL = source.getPublishedExpertise(task);
 			double recipientKL = this.getExpertise(task);
 			//Although msgContent contains the task, due to possible time delay,
 			//source's expertise may no long have the corresponding specialty Area
@@ -0,0 +1,55 @@
+package orgKTNet;
+
+/**
+ * This interface is the view of the organizational social network through which the network measures of the model read it
+ * (@see ConstraintCache, @see EgoDensityCache, @see TriangleCounter, @see Environment#getRelation(int)).
+ *
+ * There are two implementations:
+ * (a) @see RepastOrgNetwork reads the Repast projection "socialNetwork" directly;
+ * (b) @see PrimitiveOrgNetwork stores the network in primitive arrays, which are cheaper to read (@see Constants#switch_PRM).
+ * The interface only reads the network. The network is changed only through the tie-mutation methods of NetworkAnalysis
+ * (@see NetworkAnalysis#addTie(ContextJungNetwork, OrgMember, OrgMember, double)), so that everything derived from it follows every change.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public interface OrgNetwork {
+
+	/**
+	 * @return the number of agents
+	 */
+	public int size();
+
+	/**
+	 * @return the number of ties
+	 */
+	public int numEdges();
+
+	public Iterable<OrgMember> getNodes();
+
+	public int getDegree(OrgMember v);
+
+	public Iterable<OrgMember> getAdjacent(OrgMember v);
+
+	public boolean isAdjacent(OrgMember a, OrgMember b);
+
+	/**
+	 * @return the strength of the tie between a and b, or 0 if they are not connected
+	 */
+	public double getWeight(OrgMember a, OrgMember b);
+
+	/**
+	 * @return the sum of the strength of all ties of the agent
+	 */
+	public double getStrengthSum(OrgMember v);
+
+	/**
+	 * @return an array whose first getDegree(v) entries are the IDs of the agent's neighbors in ascending order.
+	 * The array may be the network's own row, so it must not be changed, and it is only valid until the network changes.
+	 */
+	public int[] getNeighborIDs(OrgMember v);
+
+	/**
+	 * @return the strengths of the agent's ties in no particular order, in a new array
+	 */
+	public double[] getNeighborWeights(OrgMember v);
+}
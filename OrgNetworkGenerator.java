@@ -0,0 +1,208 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class generates the initial organizational social network. @see Constants#switch_NGN
+ *
+ * Repast's WattsBetaSmallWorldGenerator and RandomDensityGenerator build the network through the JUNG graph one tie at a time,
+ * testing each candidate tie against the graph, and the tie history is filled afterwards by visiting all ties again (@see NetworkAnalysis#NetworkAnalysis(ContextJungNetwork)).
+ * Here the ties are first generated into primitive arrays (@see DataIO.PajekTies), and then added to the network and, if there is no tie history yet, recorded in it in one pass.
+ * The same arrays can be written as the initial Pajek file (@see DataIO#outputPajek(String, int, DataIO.PajekTies)) without walking the network.
+ * Agents are the vertices 1 to N (their IDs), and every tie has strength 1, as with the Repast generators.
+ *
+ * Random numbers are drawn from a stream of the run (@see RandomStream#forRun(long)), so the initial network only depends on the random seed.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class OrgNetworkGenerator {
+
+	/**
+	 * Distinguishes the random stream of the generators from other model-level streams. @see RandomStream#forRun(long)
+	 */
+	protected static final long GENERATOR_SALT = 25;
+
+	/**
+	 * @return a stream for generating the initial network of the current run
+	 */
+	public static RandomStream getRandomStream() {
+		return RandomStream.forRun(GENERATOR_SALT);
+	}
+
+	/**
+	 * Generate a small-world network with the beta-model of Watts and Strogatz (1998), in O(N*k) time.
+	 * Agents are placed on a ring, and every agent is connected to the k/2 nearest agents on either side.
+	 * Then each of these ties is rewired with probability beta: its far end is replaced by a randomly chosen agent,
+	 * which is neither the near end nor one of its neighbors.
+	 * @param orgSize
+	 * 		the number of agents
+	 * @param avgDegree
+	 * 		the degree of every agent on the ring (k), which should be even
+	 * @param beta
+	 * 		the rewiring probability
+	 */
+	public static DataIO.PajekTies smallWorld(int orgSize, int avgDegree, double beta, RandomStream rng) {
+		int half = Math.min(avgDegree / 2, (orgSize - 1) / 2);
+		int numOfTies = orgSize * half;
+		int[] ends = new int[2 * numOfTies];
+		int[] degree = new int[orgSize + 1];
+		PairSet pairs = new PairSet(numOfTies);
+		int t = 0;
+		for (int i = 1; i <= orgSize; i++)
+			for (int j = 1; j <= half; j++) {
+				int other = (i - 1 + j) % orgSize + 1;
+				ends[2*t] = i;
+				ends[2*t + 1] = other;
+				pairs.add(TieHistory.pairKey(i, other));
+				degree[i]++;
+				degree[other]++;
+				t++;
+			}
+		//the ties are rewired in the order of the ring, as in the beta-model
+		for (t = 0; t < numOfTies; t++) {
+			if (rng.nextDouble() >= beta)
+				continue;
+			int near = ends[2*t];
+			int far = ends[2*t + 1];
+			if (degree[near] >= orgSize - 1)
+				continue;//connected to everyone already
+			int target;
+			do {
+				target = rng.nextIntFromTo(1, orgSize);
+			} while (target == near || pairs.contains(TieHistory.pairKey(near, target)));
+			pairs.remove(TieHistory.pairKey(near, far));
+			pairs.add(TieHistory.pairKey(near, target));
+			degree[far]--;
+			degree[target]++;
+			ends[2*t + 1] = target;
+		}
+		DataIO.PajekTies ties = new DataIO.PajekTies();
+		ties.numVertices = orgSize;
+		for (t = 0; t < numOfTies; t++)
+			ties.add(ends[2*t], ends[2*t + 1], 1.);
+		return ties;
+	}
+
+	/**
+	 * Generate a random network in which every pair of agents is connected with the given probability (the density), i.e., the G(n, p) model.
+	 * Instead of drawing a number for each of the N(N-1)/2 pairs, the number of pairs skipped before the next tie follows a geometric distribution,
+	 * which is drawn directly (Batagelj and Brandes, 2005), so the generation takes O(N+E) time.
+	 * @param orgSize
+	 * 		the number of agents
+	 * @param density
+	 * 		the probability that a pair of agents is connected
+	 */
+	public static DataIO.PajekTies randomDensity(int orgSize, double density, RandomStream rng) {
+		DataIO.PajekTies ties = new DataIO.PajekTies();
+		ties.numVertices = orgSize;
+		if (density <= 0)
+			return ties;
+		if (density >= 1) {
+			for (int v = 2; v <= orgSize; v++)
+				for (int w = 1; w < v; w++)
+					ties.add(v, w, 1.);
+			return ties;
+		}
+		//log1p keeps a small density from rounding to no chance at all
+		double logQ = Math.log1p(-density);
+		//the pairs (v, w) with w < v are visited in the order (2,1), (3,1), (3,2), (4,1), ...; vertices are numbered from 0 here
+		long numOfPairs = (long) orgSize * (orgSize - 1) / 2;
+		//the index of the current pair in that order
+		long pair = -1;
+		int v = 1;
+		long w = -1;
+		while (true) {
+			//for a small density the skip may exceed any int, so it is compared with the remaining pairs before it is added
+			double skip = Math.floor(Math.log(1 - rng.nextDouble()) / logQ);
+			if (skip >= numOfPairs - pair - 1)
+				break;
+			pair += 1 + (long) skip;
+			w += 1 + (long) skip;
+			while (w >= v) {
+				w -= v;
+				v++;
+			}
+			ties.add(v + 1, (int) w + 1, 1.);
+		}
+		return ties;
+	}
+
+	/**
+	 * Add the generated ties to the network. If there is no tie history yet, the ties are recorded in a new one on the way;
+	 * otherwise the history is kept, as it is when the initial network is built in any other way (@see NetworkAnalysis#NetworkAnalysis(ContextJungNetwork)).
+	 * @param members
+	 * 		all agents in the order of their IDs (from 1)
+	 */
+	public static void addTies(ContextJungNetwork<OrgMember> net, ArrayList<OrgMember> members, DataIO.PajekTies ties) {
+		TieHistory history = (NetworkAnalysis.tieHistory == null)? new TieHistory(ties.numOfTies) : null;
+		for (int t = 0; t < ties.numOfTies; t++) {
+			int start = ties.ends[2*t];
+			int end = ties.ends[2*t + 1];
+			NetworkAnalysis.addInitialTie(net, members.get(start - 1), members.get(end - 1), ties.weights[t]);
+			if (history != null)
+				history.setStrength(start, end, ties.weights[t]);
+		}
+		if (history != null)
+			NetworkAnalysis.tieHistory = history;
+	}
+
+	/**
+	 * A set of pairs of agents (@see TieHistory#pairKey(int, int)) in an open-addressing hash table with linear probing,
+	 * used to keep the generated ties distinct.
+	 */
+	protected static class PairSet {
+		protected long[] keys;
+		protected int mask;
+
+		/**
+		 * @param maxSize
+		 * 		the largest number of pairs the set will hold
+		 */
+		protected PairSet(int maxSize) {
+			int capacity = 16;
+			while (capacity < 2 * maxSize)
+				capacity <<= 1;
+			keys = new long[capacity];
+			mask = capacity - 1;
+		}
+
+		protected int slotOf(long key) {
+			int slot = TieHistory.hash(key) & mask;
+			while (keys[slot] != TieHistory.EMPTY && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		protected boolean contains(long key) {
+			return keys[slotOf(key)] == key;
+		}
+
+		protected void add(long key) {
+			keys[slotOf(key)] = key;
+		}
+
+		/**
+		 * Remove the key and move the keys after it back, so that no probe sequence is broken.
+		 */
+		protected void remove(long key) {
+			int slot = slotOf(key);
+			if (keys[slot] != key)
+				return;
+			keys[slot] = TieHistory.EMPTY;
+			int next = (slot + 1) & mask;
+			while (keys[next] != TieHistory.EMPTY) {
+				long moved = keys[next];
+				int home = TieHistory.hash(moved) & mask;
+				//the key can fill the hole if its home slot is not in the cyclic range (slot, next]
+				if (((next - home) & mask) >= ((next - slot) & mask)) {
+					keys[slot] = moved;
+					keys[next] = TieHistory.EMPTY;
+					slot = next;
+				}
+				next = (next + 1) & mask;
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package orgKTNet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class writes the output records of DataIO on a background thread, so that the simulation thread does not wait for the disk
+ * or for expensive network measures. @see Constants#switch_ASY
+ *
+ * A record is a Runnable that captures everything it needs when it is submitted (e.g., a snapshot of the network, @see NetworkSnapshot),
+ * computes its measures, and writes its rows (@see CsvWriterPool). Records are queued in a bounded queue and run one by one in the order they were submitted,
+ * so the rows of every file are in the same order as if they were written on the simulation thread.
+ *
+ * When the queue is full, the simulation thread either
+ * (a) waits until the writer thread has taken a record from the queue (Constants.outputBackpressure = 0), or
+ * (b) runs the oldest queued records itself until there is room (Constants.outputBackpressure = 1).
+ * Since a record is taken from the queue and run while holding the same lock, either way records are run in order, one at a time.
+ *
+ * All queued records are run before the files are closed at the end of the run (@see #shutdown()) or before a file written in this run is read (@see #drain()).
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class OutputPipeline {
+
+	protected static ArrayBlockingQueue<Runnable> queue = null;
+	protected static Thread writer = null;
+	/**
+	 * Held while a record is taken from the queue and run
+	 */
+	protected static final ReentrantLock runLock = new ReentrantLock(true);
+	/**
+	 * The longest time (in milliseconds) the writer thread waits for a record before it lets go of the lock
+	 */
+	protected static final long POLL_INTERVAL = 100;
+	/**
+	 * Tells the writer thread to stop; it is never run.
+	 */
+	protected static final Runnable STOP = new Runnable() {
+		public void run() {
+		}
+	};
+	protected static boolean hookAdded = false;
+
+	/**
+	 * Hand a record over to the writer thread, or run it right away if output is synchronous.
+	 */
+	public static void submit(Runnable record) {
+		if (!Constants.switch_ASY) {
+			record.run();
+			return;
+		}
+		start();
+		if (Constants.outputBackpressure == 1) {
+			while (!queue.offer(record))
+				runNext();
+		} else
+			put(record);
+	}
+
+	protected static synchronized void start() {
+		if (writer != null)
+			return;
+		queue = new ArrayBlockingQueue<Runnable>(Math.max(1, Constants.outputQueueCapacity));
+		writer = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					//the record is taken under the lock too, so that the simulation thread cannot run a later record in the meantime;
+					//waiting under the lock is harmless since the simulation thread only needs it when the queue is full
+					runLock.lock();
+					try {
+						Runnable record = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+						if (record == STOP)
+							return;
+						if (record != null)
+							record.run();
+					} catch (InterruptedException e) {
+						continue;
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						runLock.unlock();
+					}
+				}
+			}
+		}, "orgKTNet-output");
+		//the thread must not keep the JVM alive; the queue is drained at the end of the run or, failing that, when the JVM shuts down
+		writer.setDaemon(true);
+		writer.start();
+		if (!hookAdded) {
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					shutdown();
+				}
+			}));
+			hookAdded = true;
+		}
+	}
+
+	protected static void put(Runnable record) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(record);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Run the oldest queued record on the calling thread.
+	 */
+	protected static void runNext() {
+		runLock.lock();
+		try {
+			Runnable record = queue.poll();
+			if (record == STOP)
+				queue.offer(STOP);//the queue has just had room for it, and nothing may follow it
+			else if (record != null)
+				record.run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			runLock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until every record submitted so far has been written.
+	 */
+	public static void drain() {
+		if (writer == null)
+			return;
+		final CountDownLatch done = new CountDownLatch(1);
+		put(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Write all submitted records, stop the writer thread, and close all output files.
+	 */
+	public static synchronized void shutdown() {
+		if (writer != null) {
+			put(STOP);
+			boolean interrupted = false;
+			while (writer.isAlive()) {
+				try {
+					writer.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			writer = null;
+			queue = null;
+		}
+		CsvWriterPool.closeAll();
+		NetworkFrames.closeAll();
+	}
+}
@@ -0,0 +1,109 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class steps all agents in parallel in two phases. @see Constants#switch_PAR
+ *
+ * In the compute phase, the step functions of agents run on a fork/join pool. Every agent reads a frozen state of the organization:
+ * the social network, the tie history, the expert index, and the organization-level counters are not changed,
+ * the levels of knowledge of other agents are those published before the phase began, and the constraint cache and the ego density cache are read-only.
+ * An agent only changes its own state (its inbox, expertise, task environment, and XCS) directly.
+ * Every action that changes state shared with other agents (sending a message, modifying a tie, reporting its time cost, etc.)
+ * is queued by the agent. @see OrgMember#defer(Runnable)
+ *
+ * In the commit phase, the queued actions are applied by a single thread, agent by agent in the shuffled order, each agent's actions in the order they were queued.
+ * Since every agent draws random numbers from its own stream (@see RandomStream), the result does not depend on the number of threads or how they are scheduled.
+ * It differs from sequential stepping in one respect: a message sent during a step is received at the next step, even if the receiver steps later in the same tick.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class ParallelStepper {
+
+	/**
+	 * A task steps its agents one after another if there are no more than this number of them; otherwise it splits.
+	 */
+	protected static final int THRESHOLD = 8;
+	protected static ForkJoinPool pool = null;
+
+	/**
+	 * @return the fork/join pool, which is also used by other parallel computations of the model (e.g., @see NetworkAnalysis#getBetweenness(NetworkSnapshot))
+	 */
+	public static synchronized ForkJoinPool getPool() {
+		if (pool == null)
+			pool = (Constants.numOfThreads > 0)? new ForkJoinPool(Constants.numOfThreads) : new ForkJoinPool();
+		return pool;
+	}
+
+	/**
+	 * Step all agents in parallel.
+	 * @param memberList
+	 * 		all agents in the (shuffled) order in which their actions are committed
+	 * @param net
+	 * 		the organizational social network
+	 */
+	public static void step(ArrayList<OrgMember> memberList, ContextJungNetwork<OrgMember> net) {
+		getPool();
+		//prepare: publish the knowledge of every agent and fill the constraint cache while it is still writable
+		for (OrgMember member : memberList) {
+			member.deferred = new ArrayList<Runnable>();
+			member.publishExpertise();
+			NetworkAnalysis.constraintCache.strengthSum(NetworkAnalysis.view(net), member);
+			for (Message msg : member.myMessenger.inbox)
+				if (msg.isRequest) {
+					//a request makes the agent evaluate its constraint (@see Environment#getReplyProb(int))
+					NetworkAnalysis.constraint(net, member);
+					break;
+				}
+		}
+		//compute
+		NetworkAnalysis.constraintCache.setReadOnly(true);
+		NetworkAnalysis.egoDensityCache.setReadOnly(true);
+		try {
+			pool.invoke(new StepTask(memberList, 0, memberList.size()));
+		} finally {
+			NetworkAnalysis.constraintCache.setReadOnly(false);
+			NetworkAnalysis.egoDensityCache.setReadOnly(false);
+		}
+		//commit
+		for (OrgMember member : memberList) {
+			ArrayList<Runnable> actions = member.deferred;
+			member.deferred = null;
+			member.publishedExpertise = null;
+			for (Runnable action : actions)
+				action.run();
+		}
+	}
+
+	/**
+	 * The task that steps the agents in a range of the member list.
+	 */
+	protected static class StepTask extends RecursiveAction {
+
+		protected static final long serialVersionUID = 1L;
+		protected ArrayList<OrgMember> memberList;
+		protected int from;
+		protected int to;
+
+		protected StepTask(ArrayList<OrgMember> memberList, int from, int to) {
+			this.memberList = memberList;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				for (int i = from; i < to; i++)
+					memberList.get(i).step();
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new StepTask(memberList, from, middle), new StepTask(memberList, middle, to));
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class holds the network positions of all agents at the beginning of a tick. @see Constants#switch_POS
+ *
+ * An agent's network position (@see Environment#getPosition(int, boolean)) is evaluated for the focal agent and then for every candidate source,
+ * so the positions of the same agents are evaluated many times within a tick. Here the position of every agent is evaluated once per tick,
+ * right after the network aggregates are updated (@see OrgBuilder#activateAgents()), on the fork/join pool (@see ParallelStepper#getPool()).
+ * A position is stored as a byte whose lowest three bits are the three bits of the position string, and the index is the agent ID.
+ *
+ * The table only holds the true positions. The estimation errors of agents (@see Constants#switch_EST) are still drawn every time a position is queried.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class PositionTable {
+
+	/**
+	 * A task evaluates its agents one after another if there are no more than this number of them; otherwise it splits.
+	 */
+	protected static final int THRESHOLD = 64;
+	/**
+	 * The bits of a position: the degree, the average tie strength, and the ego network density of an agent are above those of the network.
+	 */
+	public static final byte DEGREE = 1;
+	public static final byte STRENGTH = 2;
+	public static final byte DENSITY = 4;
+
+	protected final byte[] codes;
+	/**
+	 * Whether the position of each agent has been evaluated; the index is the agent ID.
+	 */
+	protected final boolean[] known;
+
+	/**
+	 * Evaluate the positions of all agents.
+	 * @param memberList
+	 * 		all agents
+	 * @param net
+	 * 		the organizational social network
+	 * @param state
+	 * 		the state whose network aggregates the agents are compared with
+	 */
+	public PositionTable(ArrayList<OrgMember> memberList, ContextJungNetwork<OrgMember> net, SimulationState state) {
+		int maxID = 0;
+		for (OrgMember member : memberList)
+			maxID = Math.max(maxID, member.getID());
+		codes = new byte[maxID + 1];
+		known = new boolean[maxID + 1];
+		//the tasks fill the ego density cache for their own agents; since the cache does not have to grow meanwhile, no two tasks write the same entry
+		NetworkAnalysis.egoDensityCache.ensureCapacity(maxID);
+		ParallelStepper.getPool().invoke(new PositionTask(memberList, 0, memberList.size(), NetworkAnalysis.view(net), state));
+	}
+
+	/**
+	 * @return whether the position of the agent is in the table
+	 */
+	public boolean contains(int omID) {
+		return omID < known.length && known[omID];
+	}
+
+	public byte getCode(int omID) {
+		return codes[omID];
+	}
+
+	/**
+	 * Evaluate the true position of an agent.
+	 * @return the bits of the position
+	 */
+	public static byte getPositionCode(OrgNetwork net, OrgMember om, SimulationState state) {
+		byte code = 0;
+		if (net.getDegree(om) > state.getAvgDegreeCentrality())
+			code |= DEGREE;
+		if (Environment.getAvgTieStrength(net, om) > state.getAvgTieStrength())
+			code |= STRENGTH;
+		if (NetworkAnalysis.egoDensityCache.density(net, om) > state.getNetworkDensity())
+			code |= DENSITY;
+		return code;
+	}
+
+	/**
+	 * The task that evaluates the positions of the agents in a range of the member list.
+	 * Every agent writes its own entries, so the tasks need no synchronization; joining the tasks publishes the entries.
+	 */
+	protected class PositionTask extends RecursiveAction {
+
+		protected static final long serialVersionUID = 1L;
+		protected ArrayList<OrgMember> memberList;
+		protected int from;
+		protected int to;
+		protected OrgNetwork net;
+		protected SimulationState state;
+
+		protected PositionTask(ArrayList<OrgMember> memberList, int from, int to, OrgNetwork net, SimulationState state) {
+			this.memberList = memberList;
+			this.from = from;
+			this.to = to;
+			this.net = net;
+			this.state = state;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					OrgMember member = memberList.get(i);
+					codes[member.getID()] = getPositionCode(net, member, state);
+					known[member.getID()] = true;
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new PositionTask(memberList, from, middle, net, state), new PositionTask(memberList, middle, to, net, state));
+		}
+	}
+}
@@ -3,8 +3,6 @@ package orgKTNet;
 import java.io.Serializable;
 import java.util.ArrayList;
 
-import repast.simphony.random.RandomHelper;
-
 /**
  * This class generates a prediction array of the provided set. The prediction
  * array is generated according to Wilson's Classifier Fitness Based on Accuracy
@@ -27,6 +25,11 @@ public class PredictionArray implements Serializable {
 	 */
 	protected double[] nr;
 
+	/**
+	 * The random stream of the classifier set the array is formed from
+	 */
+	protected RandomStream rng;
+
 	/**
 	 * Constructs the prediction array according to the give classifier set and the possible number of actions.
 	 * Whereas the value of each entry in the prediction array is the sum of corresponding action's accuracy-based fitness, 
@@ -39,6 +42,7 @@ public class PredictionArray implements Serializable {
 	public PredictionArray(XClassifierSet clSet, int numberOfActions) {
 		pa = new double[numberOfActions];
 		nr = new double[numberOfActions];
+		rng = clSet.rng;
 
 		for (int i = 0; i < numberOfActions; i++) {
 			pa[i] = 0.;
@@ -68,7 +72,7 @@ public class PredictionArray implements Serializable {
 	 * 		the outperformed type of social capital and degree preferences that the agent should utilize
 	 */
 	public int bestPreferences() {
-		int ret = RandomHelper.nextIntFromTo(0, 7);//to make sure that when every action has the same rewards, no one will tend to be more frequently picked
+		int ret = rng.nextIntFromTo(0, 7);//to make sure that when every action has the same rewards, no one will tend to be more frequently picked
 		for(int i=0; i<pa.length; i++){
 		    if(pa[ret]<pa[i])
 			ret=i;
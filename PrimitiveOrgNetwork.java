@@ -0,0 +1,311 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+import repast.simphony.space.graph.RepastEdge;
+
+/**
+ * This class stores the organizational social network in primitive arrays. @see OrgNetwork, @see Constants#switch_PRM
+ *
+ * The Repast projection stores the network as hash maps of hash maps, so reading a tie looks up two hash maps, and visiting the ties of an agent
+ * allocates an iterator and goes through tie objects. Here each agent (indexed by its ID) has a row of its neighbors' IDs in ascending order
+ * and the strengths of the ties in parallel arrays, so the strength of a tie is found by a binary search in a row,
+ * and the neighbors of two agents can be intersected by merging their rows. The rows are handed out without copying (@see #getNeighborIDs(OrgMember)),
+ * whereas getAdjacent(OrgMember) allocates a small iterator over a row for the callers that need agents rather than IDs.
+ *
+ * The strength of a tie is kept the same way as by @see DecayingTie: the strength when it was last set and the decay count at that time,
+ * from which the current strength is computed, so lazy decay (@see TieDecay) costs nothing here either.
+ *
+ * The arrays are filled from the projection once it is built (@see NetworkAnalysis#createStore(ContextJungNetwork)) and then take every change made
+ * through the tie-mutation methods of NetworkAnalysis; the measures, the decay and the output read the network from here.
+ * The ties of the projection only follow them while the network is displayed, and are dropped in batch runs.
+ * Rows are only read while agents step in parallel. @see ParallelStepper
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class PrimitiveOrgNetwork implements OrgNetwork, TieDecay.Ties {
+
+	protected static final int INITIAL_ROW = 4;
+	protected static final int[] EMPTY_IDS = new int[0];
+	protected static final double[] EMPTY_WEIGHTS = new double[0];
+	protected static final int[] EMPTY_STAMPS = new int[0];
+
+	/**
+	 * The number of neighbors of each agent; the index is the agent ID.
+	 */
+	protected int[] degree;
+	/**
+	 * The IDs of each agent's neighbors in ascending order (only the first degree[id] entries are used)
+	 */
+	protected int[][] neighbors;
+	/**
+	 * The strength of each tie when it was last set
+	 */
+	protected double[][] base;
+	/**
+	 * The decay count when the strength of each tie was last set
+	 */
+	protected int[][] touched;
+	/**
+	 * The decay count up to which the historical strength of each connected pair has been decayed. @see TieDecay#settleHistory(int, int)
+	 */
+	protected int[][] historyStamp;
+	protected ArrayList<OrgMember> nodes = new ArrayList<OrgMember>();
+	protected int numOfNodes;
+	protected int numEdges;
+
+	/**
+	 * Copy the network.
+	 */
+	public PrimitiveOrgNetwork(ContextJungNetwork<OrgMember> net) {
+		int maxID = 0;
+		for (OrgMember node : net.getNodes()) {
+			maxID = Math.max(maxID, node.getID());
+			nodes.add(node);
+		}
+		allocate(maxID + 1);
+		numOfNodes = nodes.size();
+		int clock = getClock();
+		for (RepastEdge<OrgMember> tie : net.getEdges())
+			addTie(tie.getSource(), tie.getTarget(), tie.getWeight(), clock);
+	}
+
+	protected void allocate(int capacity) {
+		degree = new int[capacity];
+		neighbors = new int[capacity][];
+		base = new double[capacity][];
+		touched = new int[capacity][];
+		historyStamp = new int[capacity][];
+		Arrays.fill(neighbors, EMPTY_IDS);
+		Arrays.fill(base, EMPTY_WEIGHTS);
+		Arrays.fill(touched, EMPTY_STAMPS);
+		Arrays.fill(historyStamp, EMPTY_STAMPS);
+	}
+
+	protected void ensureCapacity(int id) {
+		if (id < degree.length)
+			return;
+		int oldCapacity = degree.length;
+		int capacity = Math.max(id + 1, oldCapacity * 2);
+		degree = Arrays.copyOf(degree, capacity);
+		neighbors = Arrays.copyOf(neighbors, capacity);
+		base = Arrays.copyOf(base, capacity);
+		touched = Arrays.copyOf(touched, capacity);
+		historyStamp = Arrays.copyOf(historyStamp, capacity);
+		Arrays.fill(neighbors, oldCapacity, capacity, EMPTY_IDS);
+		Arrays.fill(base, oldCapacity, capacity, EMPTY_WEIGHTS);
+		Arrays.fill(touched, oldCapacity, capacity, EMPTY_STAMPS);
+		Arrays.fill(historyStamp, oldCapacity, capacity, EMPTY_STAMPS);
+	}
+
+	protected static int getClock() {
+		TieDecay decay = NetworkAnalysis.tieDecay;
+		return (decay == null)? 0 : decay.getClock();
+	}
+
+	/**
+	 * @return the current strength of the tie at position k of the row of agent id
+	 */
+	protected double weightAt(int id, int k) {
+		TieDecay decay = NetworkAnalysis.tieDecay;
+		if (decay == null)
+			return base[id][k];
+		return TieDecay.weight(base[id][k], touched[id][k], decay.getClock());
+	}
+
+	/**
+	 * @return the position of agent u in the row of agent v, or (-(insertion point) - 1) if they are not connected
+	 */
+	protected int find(int v, int u) {
+		if (v >= degree.length)
+			return -1;
+		return Arrays.binarySearch(neighbors[v], 0, degree[v], u);
+	}
+
+	public int size() {
+		return numOfNodes;
+	}
+
+	public Iterable<OrgMember> getNodes() {
+		return nodes;
+	}
+
+	public int numEdges() {
+		return numEdges;
+	}
+
+	public int getDegree(OrgMember v) {
+		int id = v.getID();
+		return (id < degree.length)? degree[id] : 0;
+	}
+
+	public Iterable<OrgMember> getAdjacent(OrgMember v) {
+		final int id = v.getID();
+		final int d = getDegree(v);
+		return new Iterable<OrgMember>() {
+			public Iterator<OrgMember> iterator() {
+				return new Iterator<OrgMember>() {
+					int k = 0;
+
+					public boolean hasNext() {
+						return k < d;
+					}
+
+					public OrgMember next() {
+						if (k >= d)
+							throw new NoSuchElementException();
+						return MemberRegistry.get(neighbors[id][k++]);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	public boolean isAdjacent(OrgMember a, OrgMember b) {
+		return find(a.getID(), b.getID()) >= 0;
+	}
+
+	public double getWeight(OrgMember a, OrgMember b) {
+		int k = find(a.getID(), b.getID());
+		return (k < 0)? 0. : weightAt(a.getID(), k);
+	}
+
+	public double getStrengthSum(OrgMember v) {
+		int id = v.getID();
+		double sum = 0;
+		for (int k = 0; k < getDegree(v); k++)
+			sum += weightAt(id, k);
+		return sum;
+	}
+
+	/**
+	 * @return the agent's own row, which is not copied
+	 */
+	public int[] getNeighborIDs(OrgMember v) {
+		int id = v.getID();
+		return (id < degree.length)? neighbors[id] : EMPTY_IDS;
+	}
+
+	public double[] getNeighborWeights(OrgMember v) {
+		int id = v.getID();
+		double[] weights = new double[getDegree(v)];
+		for (int k = 0; k < weights.length; k++)
+			weights[k] = weightAt(id, k);
+		return weights;
+	}
+
+	/**
+	 * @return every tie once, from the agent with the smaller ID to the other, with its current strength
+	 */
+	public DataIO.PajekTies getTies() {
+		DataIO.PajekTies ties = new DataIO.PajekTies();
+		ties.numVertices = numOfNodes;
+		for (int v = 0; v < degree.length; v++)
+			for (int k = 0; k < degree[v]; k++)
+				if (neighbors[v][k] > v)
+					ties.add(v, neighbors[v][k], weightAt(v, k));
+		return ties;
+	}
+
+	public boolean hasTie(int agentA, int agentB) {
+		return find(agentA, agentB) >= 0;
+	}
+
+	public double getBase(int agentA, int agentB) {
+		return base[agentA][find(agentA, agentB)];
+	}
+
+	public int getTouched(int agentA, int agentB) {
+		return touched[agentA][find(agentA, agentB)];
+	}
+
+	public int getHistoryStamp(int agentA, int agentB) {
+		return historyStamp[agentA][find(agentA, agentB)];
+	}
+
+	public void setHistoryStamp(int agentA, int agentB, int stamp) {
+		historyStamp[agentA][find(agentA, agentB)] = stamp;
+		historyStamp[agentB][find(agentB, agentA)] = stamp;
+	}
+
+	/**
+	 * The ties are only changed by the tie-mutation methods of NetworkAnalysis, which keep everything derived from the network in sync,
+	 * so the mutators are not part of @see OrgNetwork and are not public.
+	 */
+	void addTie(OrgMember a, OrgMember b, double weight) {
+		addTie(a, b, weight, getClock());
+	}
+
+	protected void addTie(OrgMember a, OrgMember b, double weight, int clock) {
+		if (isAdjacent(a, b)) {
+			setWeight(a, b, weight);
+			return;
+		}
+		insert(a.getID(), b.getID(), weight, clock);
+		insert(b.getID(), a.getID(), weight, clock);
+		numEdges++;
+	}
+
+	/**
+	 * Put agent u into the row of agent v, keeping the row in ascending order.
+	 */
+	protected void insert(int v, int u, double weight, int clock) {
+		ensureCapacity(Math.max(v, u));
+		int d = degree[v];
+		if (d == neighbors[v].length) {
+			int capacity = Math.max(INITIAL_ROW, d * 2);
+			neighbors[v] = Arrays.copyOf(neighbors[v], capacity);
+			base[v] = Arrays.copyOf(base[v], capacity);
+			touched[v] = Arrays.copyOf(touched[v], capacity);
+			historyStamp[v] = Arrays.copyOf(historyStamp[v], capacity);
+		}
+		int k = -find(v, u) - 1;
+		System.arraycopy(neighbors[v], k, neighbors[v], k + 1, d - k);
+		System.arraycopy(base[v], k, base[v], k + 1, d - k);
+		System.arraycopy(touched[v], k, touched[v], k + 1, d - k);
+		System.arraycopy(historyStamp[v], k, historyStamp[v], k + 1, d - k);
+		neighbors[v][k] = u;
+		base[v][k] = weight;
+		touched[v][k] = clock;
+		historyStamp[v][k] = clock;
+		degree[v]++;
+	}
+
+	void setWeight(OrgMember a, OrgMember b, double weight) {
+		int clock = getClock();
+		int k = find(a.getID(), b.getID());
+		if (k < 0)
+			return;
+		base[a.getID()][k] = weight;
+		touched[a.getID()][k] = clock;
+		k = find(b.getID(), a.getID());
+		base[b.getID()][k] = weight;
+		touched[b.getID()][k] = clock;
+	}
+
+	void removeTie(OrgMember a, OrgMember b) {
+		if (!isAdjacent(a, b))
+			return;
+		delete(a.getID(), b.getID());
+		delete(b.getID(), a.getID());
+		numEdges--;
+	}
+
+	protected void delete(int v, int u) {
+		int k = find(v, u);
+		int d = degree[v];
+		System.arraycopy(neighbors[v], k + 1, neighbors[v], k, d - k - 1);
+		System.arraycopy(base[v], k + 1, base[v], k, d - k - 1);
+		System.arraycopy(touched[v], k + 1, touched[v], k, d - k - 1);
+		System.arraycopy(historyStamp[v], k + 1, historyStamp[v], k, d - k - 1);
+		degree[v]--;
+	}
+}
@@ -0,0 +1,123 @@
+package orgKTNet;
+
+import repast.simphony.random.RandomHelper;
+
+/**
+ * This class is a splittable pseudo random generator (SplitMix64, Steele, Lea and Flood 2014).
+ * Each agent draws from its own stream, which is derived from the random seed of the run (the Repast "randomSeed" parameter) and the agent ID.
+ * Each component of an agent (e.g., its environment and its XCS) splits its own stream from the agent's stream.
+ * The numbers an agent draws therefore only depend on the seed and the agent's own history, not on the order in which agents are stepped,
+ * so that a run can be reproduced exactly from its seed and agents can be stepped in parallel.
+ * A stream is not thread-safe; it should only be used by its owner.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class RandomStream {
+
+	/**
+	 * The increment of the state (the odd integer closest to 2^64 divided by the golden ratio)
+	 */
+	protected static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The seed the stream started from, which is also where split streams are derived from.
+	 */
+	protected final long seed;
+	protected long state;
+	/**
+	 * The second normal value generated by the last call of nextGaussian
+	 */
+	protected double nextNextGaussian;
+	protected boolean haveNextNextGaussian = false;
+
+	public RandomStream(long seed) {
+		this.seed = seed;
+		this.state = seed;
+	}
+
+	/**
+	 * @return the stream of an agent, derived from the random seed of the current run and the agent ID
+	 */
+	public static RandomStream forAgent(int agentID) {
+		return new RandomStream(mix64(RandomHelper.getSeed())).split(agentID);
+	}
+
+	/**
+	 * @param salt
+	 * 		distinguishes the stream from other model-level streams
+	 * @return a stream for model-level draws that belong to no agent, derived from the random seed of the current run
+	 */
+	public static RandomStream forRun(long salt) {
+		//agent streams are split with positive IDs, so a negative salt never gives the stream of an agent
+		return new RandomStream(mix64(RandomHelper.getSeed())).split(-salt);
+	}
+
+	/**
+	 * @param salt
+	 * 		distinguishes the new stream from other streams split from this one (e.g., 1 for the environment and 2 for the XCS)
+	 * @return a new stream that is statistically independent of this stream. Splitting does not change this stream.
+	 */
+	public RandomStream split(long salt) {
+		return new RandomStream(mix64(seed ^ mix64(salt * GOLDEN_GAMMA + GOLDEN_GAMMA)));
+	}
+
+	protected static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	/**
+	 * @return a uniformly distributed value in [0, 1)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return a uniformly distributed integer in [0, bound)
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		//reject the values from the incomplete last interval, so that every integer is equally likely
+		int bits, val;
+		do {
+			bits = (int) (nextLong() >>> 33);
+			val = bits % bound;
+		} while (bits - val + (bound - 1) < 0);
+		return val;
+	}
+
+	/**
+	 * @return a uniformly distributed integer in [from, to]; both extremes are inclusive as in RandomHelper.
+	 */
+	public int nextIntFromTo(int from, int to) {
+		return from + nextInt(to - from + 1);
+	}
+
+	/**
+	 * @return a normally distributed value (Marsaglia's polar method)
+	 */
+	public double nextGaussian(double mean, double standardDeviation) {
+		if (haveNextNextGaussian) {
+			haveNextNextGaussian = false;
+			return mean + standardDeviation * nextNextGaussian;
+		}
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+		nextNextGaussian = v2 * multiplier;
+		haveNextNextGaussian = true;
+		return mean + standardDeviation * v1 * multiplier;
+	}
+}
@@ -0,0 +1,110 @@
+package orgKTNet;
+
+import java.util.Arrays;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+import repast.simphony.space.graph.RepastEdge;
+
+/**
+ * This class reads the Repast projection of the organizational social network. @see OrgNetwork
+ * If the projection was built with decaying ties, the lazy decay reads and stamps them through this class as well. @see TieDecay.Ties
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class RepastOrgNetwork implements OrgNetwork, TieDecay.Ties {
+
+	protected final ContextJungNetwork<OrgMember> net;
+
+	public RepastOrgNetwork(ContextJungNetwork<OrgMember> net) {
+		this.net = net;
+	}
+
+	public ContextJungNetwork<OrgMember> getProjection() {
+		return net;
+	}
+
+	public int size() {
+		return net.size();
+	}
+
+	public int numEdges() {
+		return net.numEdges();
+	}
+
+	public Iterable<OrgMember> getNodes() {
+		return net.getNodes();
+	}
+
+	public int getDegree(OrgMember v) {
+		return net.getDegree(v);
+	}
+
+	public Iterable<OrgMember> getAdjacent(OrgMember v) {
+		return net.getAdjacent(v);
+	}
+
+	public boolean isAdjacent(OrgMember a, OrgMember b) {
+		return net.isAdjacent(a, b);
+	}
+
+	public double getWeight(OrgMember a, OrgMember b) {
+		RepastEdge<OrgMember> tie = net.getEdge(a, b);
+		return (tie == null)? 0. : tie.getWeight();
+	}
+
+	public double getStrengthSum(OrgMember v) {
+		double sum = 0;
+		for (RepastEdge<OrgMember> tie : net.getEdges(v))
+			sum += tie.getWeight();
+		return sum;
+	}
+
+	public int[] getNeighborIDs(OrgMember v) {
+		int[] row = new int[net.getDegree(v)];
+		int k = 0;
+		for (OrgMember neighbor : net.getAdjacent(v))
+			row[k++] = neighbor.getID();
+		Arrays.sort(row);
+		return row;
+	}
+
+	public double[] getNeighborWeights(OrgMember v) {
+		double[] weights = new double[net.getDegree(v)];
+		int k = 0;
+		for (RepastEdge<OrgMember> tie : net.getEdges(v))
+			weights[k++] = tie.getWeight();
+		return weights;
+	}
+
+	/**
+	 * @return the decaying tie between the two agents, or null if they are not connected
+	 */
+	protected DecayingTie<OrgMember> decayingTie(int agentA, int agentB) {
+		OrgMember a = MemberRegistry.get(agentA);
+		OrgMember b = MemberRegistry.get(agentB);
+		if (a == null || b == null)
+			return null;
+		RepastEdge<OrgMember> tie = net.getEdge(a, b);
+		return (tie instanceof DecayingTie)? (DecayingTie<OrgMember>) tie : null;
+	}
+
+	public boolean hasTie(int agentA, int agentB) {
+		return decayingTie(agentA, agentB) != null;
+	}
+
+	public double getBase(int agentA, int agentB) {
+		return decayingTie(agentA, agentB).base;
+	}
+
+	public int getTouched(int agentA, int agentB) {
+		return decayingTie(agentA, agentB).touched;
+	}
+
+	public int getHistoryStamp(int agentA, int agentB) {
+		return decayingTie(agentA, agentB).historyStamp;
+	}
+
+	public void setHistoryStamp(int agentA, int agentB, int stamp) {
+		decayingTie(agentA, agentB).historyStamp = stamp;
+	}
+}
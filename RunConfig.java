@@ -0,0 +1,53 @@
+package orgKTNet;
+
+import repast.simphony.parameter.Parameters;
+
+/**
+ * This class keeps the model parameters that stay the same during a run (@see parameters.xml).
+ * It is built once when the context is built (@see OrgBuilder#build(Context)) and passed to every agent,
+ * so that agents read final fields instead of looking up, unboxing and casting the Repast parameters at every step.
+ * Parameters that change during a run are kept in {@link SimulationState}.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class RunConfig {
+
+	/**
+	 * regard the current model setting as one of the experimental conditions
+	 */
+	public final int conditionID;
+	/**
+	 * the number of problems the organization solves in a run
+	 */
+	public final int numOfProblems;
+	/**
+	 * the number of organizational members; size of the social network
+	 */
+	public final int orgSize;
+	/**
+	 * the total number of different specialty areas
+	 */
+	public final int orgArea;
+	/**
+	 * the number of specialty areas each agent needs to fulfill a task
+	 */
+	public final int taskRange;
+	/**
+	 * the max level of knowledge (also the task-required level)
+	 */
+	public final int maxKnowLevel;
+	/**
+	 * the number of specialty areas each agent initially has
+	 */
+	public final int memberArea;
+
+	public RunConfig(Parameters params) {
+		conditionID = (Integer) params.getValue("conditionID");
+		numOfProblems = (Integer) params.getValue("numOfProblems");
+		orgSize = (Integer) params.getValue("orgSize");
+		orgArea = (Integer) params.getValue("orgArea");
+		taskRange = (Integer) params.getValue("taskRange");
+		maxKnowLevel = (Integer) params.getValue("maxKnowLevel");
+		memberArea = (Integer) params.getValue("memberArea");
+	}
+}
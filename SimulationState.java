@@ -0,0 +1,131 @@
+package orgKTNet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import repast.simphony.parameter.Parameters;
+
+/**
+ * This class holds the state of the simulation that changes while it runs:
+ * the number of agents still working on the current problem ("totalLeft"), the number of agents who have to learn ("activeLearner"),
+ * the index of the current problem ("currentProblem"), and the network aggregates updated at each tick.
+ *
+ * These values used to be read and written through the Repast parameters, which costs a map lookup plus boxing and casting every time
+ * and is not safe when agents finish their tasks concurrently. Here they are primitive or atomic fields.
+ * The parameters of the same names are only synchronized at problem boundaries (@see #syncTo(Parameters)),
+ * so that they still show the progress of the run in the Repast GUI.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class SimulationState {
+
+	/**
+	 * The state of the current run, created when the context is built. @see OrgBuilder#build(Context)
+	 */
+	public static SimulationState current = null;
+
+	protected final AtomicInteger totalLeft;
+	protected final AtomicInteger activeLearner;
+	protected volatile int currentProblem;
+	/**
+	 * network aggregates, updated at each tick before agents step
+	 */
+	protected volatile double avgDegreeCentrality;
+	protected volatile double avgTieStrength;
+	protected volatile double networkDensity;
+	/**
+	 * the network positions of all agents at the beginning of the current tick, or null if positions are evaluated on demand
+	 */
+	protected volatile PositionTable positionTable = null;
+
+	/**
+	 * Take the initial values from the parameters.
+	 */
+	public SimulationState(Parameters params) {
+		totalLeft = new AtomicInteger((Integer) params.getValue("totalLeft"));
+		activeLearner = new AtomicInteger((Integer) params.getValue("activeLearner"));
+		currentProblem = (Integer) params.getValue("currentProblem");
+		avgDegreeCentrality = (Double) params.getValue("avgDegreeCentrality");
+		avgTieStrength = (Double) params.getValue("avgTieStrength");
+		networkDensity = (Double) params.getValue("networkDensity");
+	}
+
+	/**
+	 * Write the current values to the parameters of the same names.
+	 */
+	public void syncTo(Parameters params) {
+		params.setValue("totalLeft", totalLeft.get());
+		params.setValue("activeLearner", activeLearner.get());
+		params.setValue("currentProblem", currentProblem);
+		params.setValue("avgDegreeCentrality", avgDegreeCentrality);
+		params.setValue("avgTieStrength", avgTieStrength);
+		params.setValue("networkDensity", networkDensity);
+	}
+
+	/**
+	 * Move on to the next problem, which all agents start working on.
+	 * @param orgSize
+	 * 		the number of agents
+	 */
+	public void startNextProblem(int orgSize) {
+		currentProblem++;
+		totalLeft.set(orgSize);
+		activeLearner.set(orgSize);
+	}
+
+	/**
+	 * An agent has finished its task.
+	 * @return the number of agents still working
+	 */
+	public int memberFinished() {
+		return totalLeft.decrementAndGet();
+	}
+
+	/**
+	 * An agent was qualified for its task without learning anything.
+	 * @return the number of active learners left
+	 */
+	public int learnerInactive() {
+		return activeLearner.decrementAndGet();
+	}
+
+	public int getTotalLeft() {
+		return totalLeft.get();
+	}
+
+	public int getActiveLearner() {
+		return activeLearner.get();
+	}
+
+	public int getCurrentProblem() {
+		return currentProblem;
+	}
+
+	public double getAvgDegreeCentrality() {
+		return avgDegreeCentrality;
+	}
+
+	public double getAvgTieStrength() {
+		return avgTieStrength;
+	}
+
+	public double getNetworkDensity() {
+		return networkDensity;
+	}
+
+	public PositionTable getPositionTable() {
+		return positionTable;
+	}
+
+	public void setPositionTable(PositionTable table) {
+		positionTable = table;
+	}
+
+	/**
+	 * Update the network aggregates at the beginning of a tick.
+	 */
+	public void setNetworkAggregates(double avgDC, double avgStrength, double density) {
+		avgDegreeCentrality = avgDC;
+		avgTieStrength = avgStrength;
+		networkDensity = density;
+	}
+}
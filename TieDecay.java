@@ -0,0 +1,207 @@
+package orgKTNet;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * This class decays the ties of the organizational social network lazily. @see Constants#switch_LTD
+ *
+ * Tie decay used to visit every tie at every tick: reduce its strength by Constants.tieDecayMin, decay the historical strength of the pair
+ * (@see NetworkAnalysis#updateTieStrength(int, int, double, boolean)), and remove the tie once its strength falls to Constants.tieDecayMin.
+ * Since every tie loses the same amount at every decay, the strength of a tie after any number of decays is known in advance (@see #weight(double, int, int)),
+ * and so is the decay at which it will be removed. Thus each tie is put into a priority queue by that decay when its strength is set,
+ * and a decay only increases the decay count and removes the ties at the head of the queue. It takes time proportional to the number of expired ties
+ * (times log E) instead of the number of all ties. A tie whose strength is set again is queued again; its earlier entry no longer matches
+ * the decay at which the tie will be removed, so it is recognized as outdated and dropped.
+ *
+ * The ties are kept by the store of the network (@see Ties): the primitive arrays if Constants.switch_PRM is true, or the decaying ties of the Repast projection.
+ * The decay only reads and stamps them; the tie-mutation methods of NetworkAnalysis tell it when a tie has been set (@see #schedule(int, int)).
+ *
+ * The historical strength of a pair decays together with its tie, and it is brought up to date whenever it is changed or the tie is re-weighted or removed.
+ * Reading it computes the decayed value without storing it, so it can be read while agents step in parallel.
+ *
+ * The strength after k decays is computed as s - k * Constants.tieDecayMin rather than by k subtractions,
+ * so it may differ from the eagerly decayed strength in the last digits.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class TieDecay {
+
+	/**
+	 * The number of decays so far in the run
+	 */
+	protected int clock = 0;
+	protected Ties ties;
+	protected PriorityQueue<Expiry> queue = new PriorityQueue<Expiry>();
+
+	/**
+	 * The ties of the store of the network, each of which keeps its strength when it was last set, the decay count at that time,
+	 * and the decay count up to which the historical strength of the pair has been decayed.
+	 * @see PrimitiveOrgNetwork, @see RepastOrgNetwork
+	 */
+	protected interface Ties {
+
+		public boolean hasTie(int agentA, int agentB);
+
+		/**
+		 * @return the strength of the tie when it was last set
+		 */
+		public double getBase(int agentA, int agentB);
+
+		/**
+		 * @return the decay count when the strength of the tie was last set
+		 */
+		public int getTouched(int agentA, int agentB);
+
+		public int getHistoryStamp(int agentA, int agentB);
+
+		public void setHistoryStamp(int agentA, int agentB, int stamp);
+	}
+
+	/**
+	 * The decay at which a tie will be removed
+	 */
+	protected static class Expiry implements Comparable<Expiry> {
+		/**
+		 * @see TieHistory#pairKey(int, int)
+		 */
+		protected final long pair;
+		protected final int tick;
+
+		protected Expiry(long pair, int tick) {
+			this.pair = pair;
+			this.tick = tick;
+		}
+
+		public int compareTo(Expiry other) {
+			return (tick < other.tick)? -1 : ((tick == other.tick)? 0 : 1);
+		}
+	}
+
+	/**
+	 * @param ties
+	 * 		the ties of the store of the network
+	 * @param initialTies
+	 * 		all ties of the initial network, which start decaying from now on
+	 */
+	public static TieDecay create(Ties ties, DataIO.PajekTies initialTies) {
+		TieDecay decay = new TieDecay();
+		decay.ties = ties;
+		for (int t = 0; t < initialTies.numOfTies; t++)
+			decay.schedule(initialTies.ends[2*t], initialTies.ends[2*t + 1]);
+		return decay;
+	}
+
+	public int getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return the strength after the given number of decays in the run of a tie whose strength was set to base at decay touched
+	 */
+	public static double weight(double base, int touched, int clock) {
+		return base - (clock - touched) * Constants.tieDecayMin;
+	}
+
+	/**
+	 * @return the strength of the tie after the given number of decays in the run, provided that the strength is not set again meanwhile
+	 */
+	public double getWeight(int agentA, int agentB, int clock) {
+		return weight(ties.getBase(agentA, agentB), ties.getTouched(agentA, agentB), clock);
+	}
+
+	/**
+	 * @return the decay at which the tie will be removed: the first decay after which its strength is not above Constants.tieDecayMin,
+	 * or the next decay after it was set if its strength was not above Constants.tieDecayMin already
+	 */
+	protected int expiryOf(int agentA, int agentB) {
+		double base = ties.getBase(agentA, agentB);
+		int touched = ties.getTouched(agentA, agentB);
+		double min = Constants.tieDecayMin;
+		int steps = 1;
+		if (base > min) {
+			steps = Math.max(1, (int) Math.ceil((base - min) / min));
+			//correct the rounding of the division, so that the tie is removed exactly when its computed strength falls to the minimum
+			while (steps > 1 && weight(base, touched, touched + steps - 1) <= min)
+				steps--;
+			while (weight(base, touched, touched + steps) > min)
+				steps++;
+		}
+		return touched + steps;
+	}
+
+	/**
+	 * Queue the tie by the decay at which it will be removed. Called whenever the tie has been added or its strength has been set.
+	 */
+	public void schedule(int agentA, int agentB) {
+		queue.add(new Expiry(TieHistory.pairKey(agentA, agentB), expiryOf(agentA, agentB)));
+	}
+
+	/**
+	 * Decay all ties once.
+	 * @return the pairs (@see TieHistory#pairKey(int, int)) whose ties have expired at this decay, which are still in the network
+	 */
+	public ArrayList<Long> advance() {
+		clock++;
+		ArrayList<Long> expired = new ArrayList<Long>();
+		while (!queue.isEmpty() && queue.peek().tick <= clock) {
+			Expiry expiry = queue.poll();
+			int a = TieHistory.first(expiry.pair);
+			int b = TieHistory.second(expiry.pair);
+			if (!ties.hasTie(a, b) || expiryOf(a, b) != expiry.tick)
+				continue;
+			//every history stamp is below the new decay count until the tie is settled here,
+			//so a tie queued twice for the same decay is only taken at its first entry
+			if (ties.getHistoryStamp(a, b) == clock)
+				continue;
+			settleHistory(a, b);
+			expired.add(expiry.pair);
+		}
+		return expired;
+	}
+
+	/**
+	 * @return the number of decays of the historical strength of the pair connected by a tie that have not been applied yet
+	 */
+	protected int pendingDecays(int agentA, int agentB) {
+		//a tie whose strength is not above the minimum is removed at the next decay without decaying the historical strength
+		if (ties.getBase(agentA, agentB) <= Constants.tieDecayMin)
+			return 0;
+		return Math.max(0, clock - ties.getHistoryStamp(agentA, agentB));
+	}
+
+	/**
+	 * Apply the decays of the historical strength of the pair that have not been applied yet (only connected pairs decay).
+	 */
+	public void settleHistory(int agentA, int agentB) {
+		if (!ties.hasTie(agentA, agentB))
+			return;
+		int k = pendingDecays(agentA, agentB);
+		ties.setHistoryStamp(agentA, agentB, clock);
+		if (k == 0)
+			return;
+		double record = NetworkAnalysis.tieHistory.getStrength(agentA, agentB);
+		NetworkAnalysis.tieHistory.setStrength(agentA, agentB, decayHistory(record, k));
+	}
+
+	/**
+	 * @return the historical strength of the pair of agents, including the decays that have not been applied yet
+	 */
+	public double peekHistory(int agentA, int agentB) {
+		double record = NetworkAnalysis.tieHistory.getStrength(agentA, agentB);
+		if (!ties.hasTie(agentA, agentB))
+			return record;
+		return decayHistory(record, pendingDecays(agentA, agentB));
+	}
+
+	/**
+	 * Decay a historical strength k times. Each decay reduces it by Constants.tieDecayMin, but not below Constants.tieDecayMin,
+	 * and a historical strength not above Constants.tieDecayMin does not decay. @see NetworkAnalysis#updateTieStrength(int, int, double, boolean)
+	 */
+	public static double decayHistory(double record, int k) {
+		double min = Constants.tieDecayMin;
+		if (k == 0 || record <= min)
+			return record;
+		return Math.max(record - k * min, min);
+	}
+}
@@ -0,0 +1,204 @@
+package orgKTNet;
+
+/**
+ * This class records the history of every pair of agents that has ever interacted: the historically accumulated strength of their tie
+ * and the number of times their tie has been used (i.e., requests sent) while the current problem is being solved.
+ *
+ * It replaces two N*N matrices of which only the upper triangle was used and most cells remained zero.
+ * The pairs are stored in an open-addressing hash table with linear probing. The key of a pair is a long value packed from
+ * the smaller ID (higher 32 bits) and the larger ID (lower 32 bits), so (a, b) and (b, a) are the same pair.
+ * Since agent IDs start from 1, a packed key is never 0, which marks an empty slot.
+ * Values are kept in primitive arrays parallel to the key array, so reading or updating a pair does not allocate anything.
+ * A pair that has never been recorded has zero strength and zero use.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class TieHistory {
+
+	/**
+	 * The key of an empty slot
+	 */
+	protected static final long EMPTY = 0L;
+	/**
+	 * The table is enlarged when it becomes more than half full.
+	 */
+	protected static final double MAX_LOAD = 0.5;
+
+	protected long[] keys;
+	/**
+	 * The historically accumulated tie strength of each pair
+	 */
+	protected double[] strength;
+	/**
+	 * The times of use of each tie during the current problem
+	 */
+	protected int[] use;
+	/**
+	 * The number of recorded pairs
+	 */
+	protected int size;
+	protected int mask;
+
+	/**
+	 * Construct an empty history.
+	 * @param expectedPairs
+	 * 		the number of pairs expected to be recorded (e.g., the number of ties in the initial network)
+	 */
+	public TieHistory(int expectedPairs) {
+		int capacity = 16;
+		while (capacity * MAX_LOAD < expectedPairs)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	protected void allocate(int capacity) {
+		keys = new long[capacity];
+		strength = new double[capacity];
+		use = new int[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	/**
+	 * Pack two agent IDs into the key of their pair. The order of the two IDs does not matter.
+	 */
+	public static long pairKey(int agentA, int agentB) {
+		int min = (agentA < agentB)? agentA:agentB;
+		int max = (agentA < agentB)? agentB:agentA;
+		return ((long) min << 32) | (max & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the smaller ID of the pair
+	 */
+	public static int first(long key) {
+		return (int) (key >>> 32);
+	}
+
+	/**
+	 * @return the larger ID of the pair
+	 */
+	public static int second(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Spread the bits of a key so that pairs of consecutive IDs do not crowd into neighboring slots.
+	 */
+	protected static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * @return the slot of the key, or -1 if the key has not been recorded
+	 */
+	protected int find(long key) {
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of the key, which is added (with zero strength and use) if it has not been recorded
+	 */
+	protected int findOrInsert(long key) {
+		if (size + 1 > keys.length * MAX_LOAD)
+			rehash(keys.length << 1);
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		size++;
+		return slot;
+	}
+
+	protected void rehash(int capacity) {
+		long[] oldKeys = keys;
+		double[] oldStrength = strength;
+		int[] oldUse = use;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY)
+				continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			strength[slot] = oldStrength[i];
+			use[slot] = oldUse[i];
+			size++;
+		}
+	}
+
+	/**
+	 * @return the historically accumulated strength of the tie between two agents
+	 */
+	public double getStrength(int agentA, int agentB) {
+		int slot = find(pairKey(agentA, agentB));
+		return (slot < 0)? 0. : strength[slot];
+	}
+
+	/**
+	 * Set the historically accumulated strength of the tie between two agents.
+	 */
+	public void setStrength(int agentA, int agentB, double value) {
+		long key = pairKey(agentA, agentB);
+		int slot = find(key);
+		if (slot < 0) {
+			//no need to record a pair that has never interacted
+			if (value == 0.)
+				return;
+			slot = findOrInsert(key);
+		}
+		strength[slot] = value;
+	}
+
+	/**
+	 * @return the times of use of the tie between two agents during the current problem
+	 */
+	public int getUse(int agentA, int agentB) {
+		int slot = find(pairKey(agentA, agentB));
+		return (slot < 0)? 0 : use[slot];
+	}
+
+	/**
+	 * Set the times of use of the tie between two agents.
+	 */
+	public void setUse(int agentA, int agentB, int value) {
+		long key = pairKey(agentA, agentB);
+		int slot = find(key);
+		if (slot < 0) {
+			if (value == 0)
+				return;
+			slot = findOrInsert(key);
+		}
+		use[slot] = value;
+	}
+
+	/**
+	 * Add a value (which can be negative) to the times of use of the tie between two agents.
+	 * @return the updated times of use
+	 */
+	public int addUse(int agentA, int agentB, int delta) {
+		int slot = findOrInsert(pairKey(agentA, agentB));
+		use[slot] += delta;
+		return use[slot];
+	}
+
+	/**
+	 * @return the number of pairs that have ever been recorded
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,101 @@
+package orgKTNet;
+
+import repast.simphony.context.space.graph.ContextJungNetwork;
+
+/**
+ * This class keeps the number of triangles every agent belongs to (i.e., the number of ties among its neighbors) up to date,
+ * so that the average clustering coefficient can be read in O(N) at every tick. @see Constants#switch_TRI
+ *
+ * The counts are taken once from the initial network (@see NetworkAnalysis#getTriangles(NetworkSnapshot)) and then follow every tie
+ * that is added or removed through NetworkAnalysis (@see NetworkAnalysis#addTie(ContextJungNetwork, OrgMember, OrgMember, double)) or removed by tie decay.
+ * When the tie between a and b appears or disappears, so does one triangle for a, for b, and for each of their common neighbors.
+ * Finding the common neighbors takes O(min(d(a), d(b))) adjacency lookups. Re-weighting a tie does not change any triangle.
+ * The counts change with the network, so they are read on the simulation thread, e.g., when the output records are made
+ * (@see DataIO#outputPerform(String, int, int, double, double, ContextJungNetwork)), not by the writer thread.
+ * @author Yuan Lin
+ * @version OrgKTNet 1.0
+ */
+public class TriangleCounter {
+
+	/**
+	 * The number of triangles of each agent; the index is the agent ID.
+	 */
+	protected long[] triangles;
+
+	/**
+	 * @param snapshot
+	 * 		a snapshot of the initial network (@see NetworkAnalysis#snapshot(ContextJungNetwork))
+	 */
+	public TriangleCounter(NetworkSnapshot snapshot) {
+		long[] counts = NetworkAnalysis.getTriangles(snapshot);
+		int maxID = 0;
+		for (int v = 0; v < snapshot.size(); v++)
+			maxID = Math.max(maxID, snapshot.getID(v));
+		triangles = new long[maxID + 1];
+		for (int v = 0; v < snapshot.size(); v++)
+			triangles[snapshot.getID(v)] = counts[v];
+	}
+
+	protected void ensureCapacity(int id) {
+		if (id < triangles.length)
+			return;
+		long[] grown = new long[Math.max(id + 1, triangles.length * 2)];
+		System.arraycopy(triangles, 0, grown, 0, triangles.length);
+		triangles = grown;
+	}
+
+	/**
+	 * Called when a tie between a and b is added.
+	 */
+	public void tieAdded(OrgNetwork net, OrgMember a, OrgMember b) {
+		update(net, a, b, 1);
+	}
+
+	/**
+	 * Called when the tie between a and b is removed.
+	 */
+	public void tieRemoved(OrgNetwork net, OrgMember a, OrgMember b) {
+		update(net, a, b, -1);
+	}
+
+	protected void update(OrgNetwork net, OrgMember a, OrgMember b, int delta) {
+		//scan the smaller neighborhood and look up the other
+		if (net.getDegree(a) > net.getDegree(b)) {
+			OrgMember temp = a;
+			a = b;
+			b = temp;
+		}
+		ensureCapacity(Math.max(a.getID(), b.getID()));
+		long common = 0;
+		for (OrgMember w : net.getAdjacent(a)) {
+			if (w == b || !net.isAdjacent(w, b))
+				continue;
+			ensureCapacity(w.getID());
+			triangles[w.getID()] += delta;
+			common++;
+		}
+		triangles[a.getID()] += delta * common;
+		triangles[b.getID()] += delta * common;
+	}
+
+	/**
+	 * @return the number of triangles the agent belongs to
+	 */
+	public long getTriangles(OrgMember v) {
+		int id = v.getID();
+		return (id < triangles.length)? triangles[id] : 0;
+	}
+
+	/**
+	 * @see NetworkAnalysis#getAvgClusterCoeff(ContextJungNetwork)
+	 */
+	public double getAvgClusterCoeff(OrgNetwork net) {
+		double avgCC = 0.;
+		for (OrgMember v : net.getNodes()) {
+			int d = net.getDegree(v);
+			if (d >= 2)
+				avgCC += getTriangles(v) / ((d * (d - 1)) / 2.0);
+		}
+		return avgCC/net.size();
+	}
+}
@@ -3,7 +3,6 @@ package orgKTNet;
 import java.io.Serializable;
 import java.util.Iterator;
 
-import repast.simphony.engine.environment.RunEnvironment;
 
 /**
  * An instance of this class is an individual agent's XCS. 
@@ -28,9 +27,11 @@ public class XCS implements Serializable {
 
 	/**
 	 * Constructs the XCS
+	 * @param rng
+	 * 		the random stream of the XCS, which is shared by all its classifier sets
 	 */
-	public XCS(Environment e) {
-		population = new XClassifierSet();
+	public XCS(Environment e, RandomStream rng) {
+		population = new XClassifierSet(rng);
 	}
 
 	/**
@@ -50,7 +51,7 @@ public class XCS implements Serializable {
 	public XClassifier addClassifierToAction(XClassifier cl) {
 		if (actionSet == null)
 			actionSet = new XClassifierSet(matchSet);
-		int currentProblem = (Integer) RunEnvironment.getInstance().getParameters().getValue("currentProblem"); 
+		int currentProblem = SimulationState.current.getCurrentProblem();
 		cl.setActionSetSize(actionSet.getNumerositySum()+1);
 		cl.setTimeStamp(currentProblem - 1);
 		actionSet.addClassifier(cl);
@@ -77,7 +78,7 @@ public class XCS implements Serializable {
 	 * @return the type of social capital: bonding (0) or bridging (1)
 	 */
 	public int decidePreferences(String state, int numberOfActions) {
-		int counter = (Integer) RunEnvironment.getInstance().getParameters().getValue("currentProblem") - 1;
+		int counter = SimulationState.current.getCurrentProblem() - 1;
 		matchSet = new XClassifierSet(state, population, counter, numberOfActions);
 		PredictionArray pa = new PredictionArray(matchSet, numberOfActions);
 		/*for(int i = 0; i< pa.pa.length; i++)
@@ -98,7 +99,7 @@ public class XCS implements Serializable {
 				System.out.println("XCSL97 = " + actionCl.getNumerosity());
 			population.addClassifier(actionCl);
 		}
-		int counter = (Integer) RunEnvironment.getInstance().getParameters().getValue("currentProblem");
+		int counter = SimulationState.current.getCurrentProblem();
 		actionSet.runGA(counter, 8);
 		actionSet.getClassifierSet().clear();
 		actionSet = null;
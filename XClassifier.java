@@ -25,8 +25,15 @@ public class XClassifier implements Serializable {
 	 * The condition part of a classifier is a 7-bit string.
 	 * The first 4 bits indicate the knowledge requester's network position,
 	 * whereas the rest 3 bits indicate a potential or an actual knowledge source's network position.
+	 * The condition is stored as two bit masks rather than a string, so that matching, crossover and mutation are bit operations.
+	 * The i-th character of the condition string corresponds to bit (conditionLength-1-i) of both masks.
+	 * A bit of <code>care</code> is 1 if the character is '0' or '1' and 0 if it is a don't care symbol ('#').
+	 * A bit of <code>value</code> is the character itself ('0' or '1'); it is always 0 where the care bit is 0.
+	 * The string form is only built for printing. @see #getCondition()
 	 */
-	protected String condition;
+	protected long care;
+	protected long value;
+	protected int conditionLength;
 	/**
 	 * The action part of a classifier is an integer from [0, 7]. Each integer from this range corresponds to a unique 3-bit string.
 	 * The first bit explains whether the host agent (the recipient) views its social relationship with the corresponding knowledge source as bonding (0) or bridging (1) social capital.
@@ -82,10 +89,12 @@ public class XClassifier implements Serializable {
 	 *            set to the number of actions possible in the problem).
 	 * @param situation
 	 *            The current problem instance/perception.
+	 * @param rng
+	 * 			  The random stream of the XCS.
 	 */
-	public XClassifier(double setSize, int time, int numberOfActions, String situation) {
-		createMatchingCondition(situation);
-		createRandomAction(numberOfActions);
+	public XClassifier(double setSize, int time, int numberOfActions, String situation, RandomStream rng) {
+		createMatchingCondition(situation, rng);
+		createRandomAction(numberOfActions, rng);
 		classifierSetVariables(setSize, time);
 	}
 	/**
@@ -98,9 +107,11 @@ public class XClassifier implements Serializable {
 	 *            The current problem instance/perception.
 	 * @param act
 	 *            The action of the new classifier.
+	 * @param rng
+	 * 			  The random stream of the XCS.
 	 */
-	public XClassifier(double setSize, int time, String situation, int act) {
-		createMatchingCondition(situation);
+	public XClassifier(double setSize, int time, String situation, int act, RandomStream rng) {
+		createMatchingCondition(situation, rng);
 		action = act;
 		classifierSetVariables(setSize, time);
 	}
@@ -113,7 +124,9 @@ public class XClassifier implements Serializable {
 	 * 			indicate whether the new classifier and the old one are identical.
 	 */
 	public XClassifier(XClassifier clOld, boolean duplicate) {
-		condition = new String(clOld.condition);
+		care = clOld.care;
+		value = clOld.value;
+		conditionLength = clOld.conditionLength;
 		action = clOld.action;
 		this.prediction = clOld.prediction;
 		this.predictionError = clOld.predictionError;
@@ -149,9 +162,9 @@ public class XClassifier implements Serializable {
 	 * @return
 	 * 		true if at least one bit or the classifier (condition or action part) was mutated.
 	 */
-	public boolean applyMutation(int numberOfActions) {
-		boolean changed = mutateCondition();
-		if (mutateAction(numberOfActions))
+	public boolean applyMutation(int numberOfActions, RandomStream rng) {
+		boolean changed = mutateCondition(rng);
+		if (mutateAction(numberOfActions, rng))
 			changed = true;
 		return changed;
 	}
@@ -182,40 +195,80 @@ public class XClassifier implements Serializable {
 	 * @param cond
 	 * 		the specified condition string
 	 */
-	protected void createMatchingCondition(String cond) {
-		int condLength = cond.length();
-		char condArray[] = new char[condLength];
-
-		for (int i = 0; i < condLength; i++)
-			if (Constants.drand() < Constants.P_dontcare)
-				condArray[i] = Constants.dontCare;
-			else
-				condArray[i] = cond.charAt(i);
-		condition = new String(condArray);
+	protected void createMatchingCondition(String cond, RandomStream rng) {
+		setCondition(cond);
+		for (int i = conditionLength - 1; i >= 0; i--)
+			if (rng.nextDouble() < Constants.P_dontcare) {
+				care &= ~(1L << i);
+				value &= ~(1L << i);
+			}
 	}
 	/**
 	 * Create a random action.
 	 * @param numberOfActions
 	 *      the total number of actions to chose from.
 	 */
-	protected void createRandomAction(int numberOfActions) {
-		action = (int) (Constants.drand() * numberOfActions);
+	protected void createRandomAction(int numberOfActions, RandomStream rng) {
+		action = (int) (rng.nextDouble() * numberOfActions);
 	}
 	/**
 	 * Create a condition randomly considering the constant
 	 * <code>P_dontcare</code>.
 	 * @see XCSConstants#P_dontcare
 	 */
-	protected void createRandomCondition(int condLength) {
-		char condArray[] = new char[condLength];
-		for (int i = 0; i < condLength; i++)
-			if (Constants.drand() < Constants.P_dontcare)
-				condArray[i] = Constants.dontCare;
-			else if (Constants.drand() < 0.5)
-				condArray[i] = '0';
+	protected void createRandomCondition(int condLength, RandomStream rng) {
+		care = 0L;
+		value = 0L;
+		conditionLength = condLength;
+		for (int i = condLength - 1; i >= 0; i--)
+			if (rng.nextDouble() < Constants.P_dontcare)
+				continue;
+			else {
+				care |= 1L << i;
+				if (rng.nextDouble() >= 0.5)
+					value |= 1L << i;
+			}
+	}
+
+	/**
+	 * @return the care mask of a condition string: 1 for each '0' or '1', and 0 for each don't care symbol.
+	 */
+	public static long careMask(String cond) {
+		long mask = 0L;
+		for (int i = 0; i < cond.length(); i++) {
+			mask <<= 1;
+			if (cond.charAt(i) != Constants.dontCare)
+				mask |= 1L;
+		}
+		return mask;
+	}
+
+	/**
+	 * @return the value mask of a condition string: 1 for each '1', and 0 otherwise.
+	 */
+	public static long valueMask(String cond) {
+		long mask = 0L;
+		for (int i = 0; i < cond.length(); i++) {
+			mask <<= 1;
+			if (cond.charAt(i) == '1')
+				mask |= 1L;
+		}
+		return mask;
+	}
+
+	/**
+	 * Build the string form of a condition out of its masks.
+	 */
+	public static String conditionString(long care, long value, int length) {
+		char[] cond = new char[length];
+		for (int i = 0; i < length; i++) {
+			long bit = 1L << (length - 1 - i);
+			if ((care & bit) == 0)
+				cond[i] = Constants.dontCare;
 			else
-				condArray[i] = '1';
-		condition = new String(condArray);
+				cond[i] = ((value & bit) == 0)? '0':'1';
+		}
+		return new String(cond);
 	}
 
 	/**
@@ -229,10 +282,23 @@ public class XClassifier implements Serializable {
 	 * 		whereas this method is used to update specific classifiers in the action or population sets.
 	 */
 	public boolean equal(String cond, int act) {
-		if (cond.equals(this.condition))
-			if (act == this.action)
-				return true;
-		return false;
+		return equal(careMask(cond), valueMask(cond), cond.length(), act);
+	}
+
+	/**
+	 * Return whether the classifier has a specific combination of condition (given as masks) and action.
+	 * @see #equal(String, int)
+	 */
+	public boolean equal(long cCare, long cValue, int cLength, int act) {
+		return care == cCare && value == cValue && conditionLength == cLength && action == act;
+	}
+
+	/**
+	 * Return whether the classifier has the same condition and action as the parameter classifier.
+	 * @see #equal(String, int)
+	 */
+	public boolean equal(XClassifier cl) {
+		return equal(cl.care, cl.value, cl.conditionLength, cl.action);
 	}
 
 	/**
@@ -264,8 +330,23 @@ public class XClassifier implements Serializable {
 		return actionSetSize;
 	}
 
+	/**
+	 * @return the condition string, which is built out of the condition masks on every call.
+	 */
 	public String getCondition() {
-		return condition;
+		return conditionString(care, value, conditionLength);
+	}
+
+	public long getCareMask() {
+		return care;
+	}
+
+	public long getValueMask() {
+		return value;
+	}
+
+	public int getConditionLength() {
+		return conditionLength;
 	}
 
 	/**
@@ -323,14 +404,11 @@ public class XClassifier implements Serializable {
 	 *        The supposedly more specific classifier.
 	 */
 	public boolean isMoreGeneral(XClassifier cl) {
-		boolean ret = false;
-		for (int i = 0; i < condition.length(); i++)
-			if (condition.charAt(i) != Constants.dontCare
-					&& condition.charAt(i) != cl.condition.charAt(i))
-				return false;
-			else if (condition.charAt(i) != cl.condition.charAt(i))
-				ret = true;
-		return ret;
+		//every specified bit of this classifier must be specified by cl with the same value,
+		//and cl must specify at least one more bit
+		if ((care & ~cl.care) != 0 || ((value ^ cl.value) & care) != 0)
+			return false;
+		return care != cl.care;
 	}
 
 	/**
@@ -354,14 +432,16 @@ public class XClassifier implements Serializable {
 	 *         the given string
 	 */
 	public boolean match(String state) {
-		if(condition.length()!= state.length())
-			return false;
-		for (int i = 0; i < state.length(); i++)
-			if (condition.charAt(i) != Constants.dontCare
-				&& condition.charAt(i) != state.charAt(i)
-					&& state.charAt(i) != Constants.dontCare)
-					return false;
-		return true;
+		return match(careMask(state), valueMask(state), state.length());
+	}
+
+	/**
+	 * Return whether the condition part of the classifier matches the given state (given as masks).
+	 * A bit position can only cause a mismatch if both the condition and the state care about it.
+	 * @see #match(String)
+	 */
+	public boolean match(long stateCare, long stateValue, int stateLength) {
+		return conditionLength == stateLength && ((value ^ stateValue) & care & stateCare) == 0;
 	}
 
 	/**
@@ -372,12 +452,12 @@ public class XClassifier implements Serializable {
 	 * @return
 	 * 		true if the current action has changed to another possible action.
 	 */
-	protected boolean mutateAction(int numberOfActions) {
+	protected boolean mutateAction(int numberOfActions, RandomStream rng) {
 		boolean changed = false;
-		if (Constants.drand() < Constants.pM) {
+		if (rng.nextDouble() < Constants.pM) {
 			int act = 0;
 			do
-				act = (int) (Constants.drand() * numberOfActions);
+				act = (int) (rng.nextDouble() * numberOfActions);
 			while (act == action);
 			action = act;
 			changed = true;
@@ -392,22 +472,21 @@ public class XClassifier implements Serializable {
 	 * @return
 	 * 		true if at least one bit has been changed.
 	 */
-	protected boolean mutateCondition() {
+	protected boolean mutateCondition(RandomStream rng) {
 		boolean changed = false;
-		int condLength = condition.length();
-		char[] cond = condition.toCharArray();
-		for (int i = 0; i < condLength; i++)
-			if (Constants.drand() < Constants.pM) {
+		for (int i = conditionLength - 1; i >= 0; i--)
+			if (rng.nextDouble() < Constants.pM) {
 				changed = true;
-				if (cond[i] == Constants.dontCare) {
-					if (Constants.drand() < 0.5)
-						cond[i] = 0;
-					else
-						cond[i] = 1;
-				} else
-					cond[i] = Constants.dontCare;
+				long bit = 1L << i;
+				if ((care & bit) == 0) {
+					care |= bit;
+					if (rng.nextDouble() >= 0.5)
+						value |= bit;
+				} else {
+					care &= ~bit;
+					value &= ~bit;
+				}
 			}
-		condition = new String(cond);
 		return changed;
 	}
 
@@ -418,7 +497,7 @@ public class XClassifier implements Serializable {
 	 * @throws Exception
 	 */
 	public void printXClassifier(BufferedWriter writer) throws Exception {
-		writer.write(condition
+		writer.write(getCondition()
 				+ "-"
 				+ String.format("%3s", Integer.toBinaryString(action)).replace(
 						" ", "0") + " " + (float) prediction + " "
@@ -436,7 +515,9 @@ public class XClassifier implements Serializable {
 	}
 
 	public void setCondition(String newCondition) {
-		condition = newCondition;
+		care = careMask(newCondition);
+		value = valueMask(newCondition);
+		conditionLength = newCondition.length();
 	}
 
 	public void setExperience(int newExperience) {
@@ -482,12 +563,12 @@ public class XClassifier implements Serializable {
 	 * @return
 	 * 		the other classifier if crossover has happened; null otherwise.
 	 */
-	protected XClassifier twoPointCrossover(XClassifier cl) {
+	protected XClassifier twoPointCrossover(XClassifier cl, RandomStream rng) {
 		boolean changed = false;
-		if (Constants.drand() < Constants.pX) {
-			int length = condition.length();
-			int sep1 = (int) (Constants.drand() * length);
-			int sep2 = (int) (Constants.drand() * length) + 1;
+		if (rng.nextDouble() < Constants.pX) {
+			int length = conditionLength;
+			int sep1 = (int) (rng.nextDouble() * length);
+			int sep2 = (int) (rng.nextDouble() * length) + 1;
 			if (sep1 > sep2) {
 				// switch sep1 and sep2
 				int help = sep1;
@@ -495,18 +576,16 @@ public class XClassifier implements Serializable {
 				sep2 = help;
 			} else if (sep1 == sep2)
 				sep2++;
-			char[] cond1 = condition.toCharArray();
-			char[] cond2 = cl.condition.toCharArray();
-			for (int i = sep1; i < sep2; i++)
-				if (cond1[i] != cond2[i]) {
-					changed = true;
-					char help = cond1[i];
-					cond1[i] = cond2[i];
-					cond2[i] = help;
-				}
+			//the characters sep1, ..., sep2-1 of the condition string are the bits (length-sep2), ..., (length-1-sep1) of the masks
+			long section = ((1L << (sep2 - sep1)) - 1) << (length - sep2);
+			long careDiff = (care ^ cl.care) & section;
+			long valueDiff = (value ^ cl.value) & section;
+			changed = (careDiff | valueDiff) != 0;
 			if (changed) {
-				condition = new String(cond1);
-				cl.condition = new String(cond2);
+				care ^= careDiff;
+				cl.care ^= careDiff;
+				value ^= valueDiff;
+				cl.value ^= valueDiff;
 				return cl;
 			}
 			else return null;
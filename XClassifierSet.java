@@ -45,16 +45,31 @@ public class XClassifierSet implements Serializable {
 	 */
 	protected ArrayList<XClassifier> clSet;
 
+	/**
+	 * The index of the population set, which replaces the scans of the whole population when building match sets
+	 * and detecting duplicates. It is null for match and action sets, which are small. @see ClassifierIndex
+	 */
+	protected ClassifierIndex index;
+
+	/**
+	 * The random stream of the XCS the set belongs to. Match and action sets share the stream of their parent sets.
+	 */
+	protected RandomStream rng;
+
 	//public int addedClassNumber;
 	//public int removedClassifiersNumber;
 
 	/**
 	 * Construct a new, empty population set
+	 * @param rng
+	 * 		the random stream of the XCS
 	 */
-	public XClassifierSet() {
+	public XClassifierSet(RandomStream rng) {
+		this.rng = rng;
 		numerositySum = 0;
 		parentSet = null;
 		clSet = new ArrayList<XClassifier>();
+		index = new ClassifierIndex();
 	}
 
 	/**
@@ -79,6 +94,7 @@ public class XClassifierSet implements Serializable {
 	 */
 	public XClassifierSet(String state, XClassifierSet pop, int counter, int numberOfActions) {
 		parentSet = pop;
+		rng = pop.rng;
 		numerositySum = 0;
 		clSet = new ArrayList<XClassifier>();
 
@@ -87,8 +103,13 @@ public class XClassifierSet implements Serializable {
 			actionCovered[j] = false;
 		}
 
-		for (XClassifier cl : pop.getClassifierSet()) {
-			if (cl.match(state)) {
+		//encode the state once rather than once per classifier
+		long stateCare = XClassifier.careMask(state);
+		long stateValue = XClassifier.valueMask(state);
+		ArrayList<XClassifier> candidates = (pop.index != null && pop.index.isUsable())?
+				pop.index.matching(stateCare, stateValue, state.length()) : pop.getClassifierSet();
+		for (XClassifier cl : candidates) {
+			if (cl.match(stateCare, stateValue, state.length())) {
 				if(cl.getNumerosity()==0)
 					System.out.println("XClassifierSetL93");
 				addClassifier(cl);
@@ -101,7 +122,7 @@ public class XClassifierSet implements Serializable {
 			flag = false;
 			for (int i = 0; i < actionCovered.length; i++) {
 				if (!actionCovered[i]) {
-					XClassifier newCl = new XClassifier(numerositySum + 1, counter, state, i);
+					XClassifier newCl = new XClassifier(numerositySum + 1, counter, state, i, rng);
 					addClassifier(newCl);
 					pop.addClassifier(newCl);
 				}
@@ -112,7 +133,7 @@ public class XClassifierSet implements Serializable {
 					Iterator<XClassifier> it = this.clSet.iterator();
 					while (it.hasNext()) {
 						XClassifier c = it.next();
-						if(c.equal(cdel.getCondition(), cdel.getAction())){
+						if(c.equal(cdel)){
 							c.addNumerosity(-1);
 							numerositySum--;
 							//In the if statement below, use <= instead of == because sometimes the numerosity of the 
@@ -140,6 +161,7 @@ public class XClassifierSet implements Serializable {
 	 */
 	public XClassifierSet(XClassifierSet matchSet) {
 		parentSet = matchSet;
+		rng = matchSet.rng;
 		numerositySum = 0;
 		clSet = new ArrayList<XClassifier>();
 	}
@@ -153,13 +175,27 @@ public class XClassifierSet implements Serializable {
 	 * 		the given classifier
 	 */
 	public void addClassifier(XClassifier cl) {
-		XClassifier oldcl = getMatchClassifier(cl.getCondition(), cl.getAction(), true);
+		XClassifier oldcl = null;
+		if (index != null && index.isUsable())
+			oldcl = index.find(cl);
+		else {
+			for (XClassifier c : clSet) {
+				if (c.equal(cl)) {
+					oldcl = c;
+					break;
+				}
+			}
+		}
 		if (oldcl != null)
 			oldcl.addNumerosity(cl.getNumerosity());
-		else
+		else {
 			//add a duplicate classifier to the population set.
 			//add(cl) will add a reference of the same object(cl) to two sets
-			clSet.add(new XClassifier(cl, true));
+			XClassifier newcl = new XClassifier(cl, true);
+			clSet.add(newcl);
+			if (index != null)
+				index.add(newcl);
+		}
 		numerositySum += cl.getNumerosity();
 	}
 
@@ -178,7 +214,7 @@ public class XClassifierSet implements Serializable {
 			sum += cl.getDelProp(meanFitness);
 		}
 
-		double choicePoint = sum * Constants.drand();
+		double choicePoint = sum * rng.nextDouble();
 		sum = 0.;
 		Iterator<XClassifier> it = clSet.iterator();
 		while (it.hasNext()) {
@@ -187,8 +223,11 @@ public class XClassifierSet implements Serializable {
 			if (sum > choicePoint) {
 				cl.addNumerosity(-1);
 				numerositySum --;
-				if (cl.getNumerosity() <= 0)
+				if (cl.getNumerosity() <= 0) {
 					it.remove();
+					if (index != null)
+						index.remove(cl);
+				}
 				return cl;
 			}
 		}
@@ -263,11 +302,14 @@ public class XClassifierSet implements Serializable {
 	 * 		a classifier with more specific condition and action parts.
 	 */
 	public XClassifier getMatchClassifier(String condition, int action, boolean identical) {
+		long condCare = XClassifier.careMask(condition);
+		long condValue = XClassifier.valueMask(condition);
+		int condLength = condition.length();
 		for (XClassifier cl : clSet){
-			if (identical && cl.equal(condition, action))
+			if (identical && cl.equal(condCare, condValue, condLength, action))
 				return cl;
-			else if(!identical && cl.match(condition) && cl.getAction() == action)
-				return new XClassifier(-1, -1, condition, action);
+			else if(!identical && cl.getAction() == action && cl.match(condCare, condValue, condLength))
+				return new XClassifier(-1, -1, condition, action, rng);
 		}
 		return null;
 	}
@@ -405,7 +447,10 @@ public class XClassifierSet implements Serializable {
 	 */
 	protected boolean removeClassifier(XClassifier cl)
 	{
-		return clSet.remove(cl);
+		boolean removed = clSet.remove(cl);
+		if (removed && index != null)
+			index.remove(cl);
+		return removed;
 	}
 
 	/**
@@ -439,10 +484,10 @@ public class XClassifierSet implements Serializable {
 		XClassifier cl1 = new XClassifier(cl1P, false);
 		XClassifier cl2 = new XClassifier(cl2P, false);
 
-		cl1.twoPointCrossover(cl2);
+		cl1.twoPointCrossover(cl2, rng);
 
-		cl1.applyMutation(numberOfActions);
-		cl2.applyMutation(numberOfActions);
+		cl1.applyMutation(numberOfActions, rng);
+		cl2.applyMutation(numberOfActions, rng);
 
 		cl1.setPrediction((cl1.getPrediction() + cl2.getPrediction()) / 2.);
 		cl1.setPredictionError(Constants.predictionErrorReduction
@@ -463,7 +508,7 @@ public class XClassifierSet implements Serializable {
 	 * 		the selected classifier
 	 */
 	protected XClassifier selectXClassifierRW(double fitSum) {
-		double choiceP = Constants.drand() * fitSum;
+		double choiceP = rng.nextDouble() * fitSum;
 		double sum = 0.;
 		for (XClassifier cl : clSet) {
 			sum += cl.getFitness();
@@ -499,7 +544,7 @@ public class XClassifierSet implements Serializable {
 		}
 
 		if (choices.size() > 0) {
-			int choice = (int) (Constants.drand() * choices.size());
+			int choice = (int) (rng.nextDouble() * choices.size());
 			choices.elementAt(choice).addNumerosity(1);
 			increaseNumerositySum(1);
 			return;
@@ -604,15 +649,15 @@ public class XClassifierSet implements Serializable {
 		ArrayList<OrgMember> closeContacts = myEnv.getCloseContacts();
 		if(closeContacts == null){
 			System.out.println("This agent has no contact.");
-			myEnv.focalMember.setSCPreference ((Constants.drand() < 0.5)? currentSCPref:(1-currentSCPref)); // if it is 1 - currentSCPref, then 0-->1 and 1-->0
-			myEnv.focalMember.setNDPreference ((Constants.drand() < 0.5)? currentNDPref:(1-currentNDPref)) ;
+			myEnv.focalMember.setSCPreference ((rng.nextDouble() < 0.5)? currentSCPref:(1-currentSCPref)); // if it is 1 - currentSCPref, then 0-->1 and 1-->0
+			myEnv.focalMember.setNDPreference ((rng.nextDouble() < 0.5)? currentNDPref:(1-currentNDPref)) ;
 		}
 		else{
 			int numOfBondPref = 0;
 			int numOfMoreDegree = 0;
 			int minTC = myEnv.timeCost;
-			int bestSCPref = (Constants.drand() < 0.5)? currentSCPref:(1-currentSCPref);
-			int bestNDPref = (Constants.drand() < 0.5)? currentNDPref:(1-currentNDPref);
+			int bestSCPref = (rng.nextDouble() < 0.5)? currentSCPref:(1-currentSCPref);
+			int bestNDPref = (rng.nextDouble() < 0.5)? currentNDPref:(1-currentNDPref);
 			for (OrgMember contact : closeContacts) {
 				int contactTC = contact.getTaskEnvironment().timeCost;
 				//**If contactTC = 1, the agent finishes early because it initially has all required knowledge.
@@ -633,11 +678,11 @@ public class XClassifierSet implements Serializable {
 			if(Constants.switch_MOB == true){
 				if(numOfBondPref > 0) myEnv.focalMember.setSCPreference(0);
 				else if(numOfBondPref < 0) myEnv.focalMember.setSCPreference(1);
-				else myEnv.focalMember.setSCPreference((Constants.drand() < 0.5)? currentSCPref:(1-currentSCPref));
+				else myEnv.focalMember.setSCPreference((rng.nextDouble() < 0.5)? currentSCPref:(1-currentSCPref));
 				
 				if(numOfMoreDegree > 0) myEnv.focalMember.setNDPreference(1);
 				else if(numOfMoreDegree < 0) myEnv.focalMember.setSCPreference(0);
-				else myEnv.focalMember.setNDPreference((Constants.drand() < 0.5)? currentNDPref:(1-currentNDPref));
+				else myEnv.focalMember.setNDPreference((rng.nextDouble() < 0.5)? currentNDPref:(1-currentNDPref));
 			}
 			else{
 				//when minTC == myEnv.timeCost (no one else is better), the focal member will change its preferences anyway.
@@ -676,10 +721,9 @@ public class XClassifierSet implements Serializable {
 	 * 		true if an update happens
 	 */
 	public boolean updateSet(Message msg, double reward) {
-		String msgClCond = msg.getBaseCl().getCondition();
-		int msgClAct = msg.getBaseCl().getAction();
+		XClassifier msgCl = msg.getBaseCl();
 		for (XClassifier cl : clSet) {
-			if (cl.equal(msgClCond, msgClAct)) {
+			if (cl.equal(msgCl)) {
 				//Use accumulation because one classifier may correspond to multiple knowledge sources
 				//and thus get rewards for multiple times.
 				cl.setTempFitness(cl.getTempFitness() + reward); 